@@ -0,0 +1,43 @@
+package jogodavelha;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mede bestGuess () em cada nvel de 0 a 8 a partir do tabuleiro vazio. O custo
+ * cresce com o nmero de ns da rvore do nvel, ento os nveis baixos medem o
+ * custo fixo por chamada e os altos o custo por n.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BestGuessBenchmark {
+	@Param({ "0", "1", "2", "3", "4", "5", "6", "7", "8" })
+	public int level;
+
+	private JogoDaVelha game;
+
+	@Setup
+	public void setUp() {
+		game = Positions.of(Positions.EMPTY);
+	}
+
+	@Benchmark
+	public int bestGuess() {
+		return game.bestGuess(level);
+	}
+}
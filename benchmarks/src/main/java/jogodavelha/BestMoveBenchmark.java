@@ -0,0 +1,69 @@
+package jogodavelha;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mede bestMove () nas posies de Positions, com cada uma das buscas do
+ * computador:
+ *
+ * - legacy: o minimax original de bestGuess ();
+ * - alphabeta: AlphaBetaSearch sem tabela de transposio;
+ * - table: AlphaBetaSearch com uma tabela de transposio, esvaziada antes de
+ * cada chamada (o que entra na medida). Como toda chamada busca a mesma
+ * posio, uma tabela que sobrevivesse entre elas responderia sem buscar, e a
+ * medida seria a de uma consulta  tabela, no a de uma busca.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BestMoveBenchmark {
+	@Param({ "empty", "midgame", "endgame" })
+	public String position;
+
+	@Param({ "legacy", "alphabeta", "table" })
+	public String search;
+
+	private JogoDaVelha game;
+	private TranspositionTable table = null;
+
+	@Setup
+	public void setUp() {
+		game = Positions.of(Positions.named(position));
+
+		switch (search) {
+		case "alphabeta":
+			game.setSearchStrategy(new AlphaBetaSearch());
+			break;
+		case "table":
+			table = new TranspositionTable(2048);
+			game.setSearchStrategy(new AlphaBetaSearch(table));
+			break;
+		default:
+			break;
+		}
+	}
+
+	@Benchmark
+	public int bestMove() {
+		if (table != null) {
+			table.clear();
+		}
+
+		return game.bestMove();
+	}
+}
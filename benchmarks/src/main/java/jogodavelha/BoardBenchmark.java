@@ -0,0 +1,68 @@
+package jogodavelha;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mede as consultas feitas em todo n da busca ou em toda vez do jogo:
+ * result (), generateLegalMoves () e drawBoard (), e as verses sem alocao
+ * das duas ltimas, legalMoves () e BoardEncoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+	@Param({ "empty", "midgame", "endgame" })
+	public String position;
+
+	private JogoDaVelha game;
+	private int[] moves;
+	private BoardEncoder encoder;
+
+	@Setup
+	public void setUp() {
+		game = Positions.of(Positions.named(position));
+		moves = new int[game.getCells()];
+		encoder = new BoardEncoder();
+	}
+
+	@Benchmark
+	public int result() {
+		return game.result();
+	}
+
+	@Benchmark
+	public int[] generateLegalMoves() {
+		return game.generateLegalMoves();
+	}
+
+	@Benchmark
+	public String drawBoard() {
+		return game.drawBoard();
+	}
+
+	@Benchmark
+	public int legalMoves() {
+		return game.legalMoves(moves);
+	}
+
+	@Benchmark
+	public ByteBuffer encodeBoard() {
+		return encoder.encode(game);
+	}
+}
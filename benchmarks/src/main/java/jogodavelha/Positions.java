@@ -0,0 +1,71 @@
+package jogodavelha;
+
+/**
+ * Posies do jogo clssico usadas pelos benchmarks, escritas no mesmo formato
+ * de drawBoard (): "1" para o jogador, "2" para o computador e "-" para as
+ * posies livres. Em todas  a vez do computador, ento quem comeou  quem
+ * tem mais marcas ou, com o mesmo nmero, o computador.
+ */
+final class Positions {
+	/**
+	 * Nenhuma jogada feita: a busca mais cara do jogo.
+	 */
+	static final String EMPTY = "---------";
+
+	/**
+	 * Trs jogadas feitas: o jogador no centro e em um canto, o computador no
+	 * canto oposto.
+	 */
+	static final String MIDGAME = "2---1---1";
+
+	/**
+	 * Seis jogadas feitas e trs posies livres, sem vencedor. O computador
+ * comeou.
+	 */
+	static final String ENDGAME = "212-1--21";
+
+	private Positions() {
+	}
+
+	/**
+	 * Retorna a posio com o nome indicado: "empty", "midgame" ou "endgame".
+	 */
+	static String named(String name) {
+		switch (name) {
+		case "empty":
+			return EMPTY;
+		case "midgame":
+			return MIDGAME;
+		case "endgame":
+			return ENDGAME;
+		default:
+			throw new IllegalArgumentException("Posio desconhecida: " + name);
+		}
+	}
+
+	/**
+	 * Estabelece um jogo clssico na posio indicada, com a vez do computador.
+	 */
+	static JogoDaVelha of(String board) {
+		JogoDaVelha game = new JogoDaVelha();
+		int balance = 0;
+
+		for (int i = 0; i < board.length(); i++) {
+			if (board.charAt(i) == '1') {
+				game.placePiece(game.getPLAYER_TURN(), i);
+				balance++;
+			}
+
+			else if (board.charAt(i) == '2') {
+				game.placePiece(game.getCOMPUTER_TURN(), i);
+				balance--;
+			}
+		}
+
+		// Com a vez do computador, o jogador s pode ter uma marca a mais.
+		game.setFirstTurn((balance > 0) ? game.getPLAYER_TURN() : game.getCOMPUTER_TURN());
+		game.setWhoseTurn(game.getCOMPUTER_TURN());
+
+		return game;
+	}
+}
@@ -0,0 +1,206 @@
+package jogodavelha;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Executa os benchmarks com o profiler de GC e compara os resultados com uma
+ * linha de base gravada anteriormente. Termina com cdigo 1 se algum resultado
+ * piorou mais que a tolerncia, para ser usado como porto antes de aceitar
+ * uma mudana no motor.
+ *
+ * Uso: RegressionGate BASELINE [--record] [--include=REGEX] [--tolerance=PCT]
+ *
+ * Com --record, os resultados so gravados em BASELINE em vez de comparados.
+ * So comparados a vazo (maior  melhor), o tempo mdio (menor  melhor) e os
+ * bytes alocados por operao (menor  melhor).
+ */
+public final class RegressionGate {
+	/**
+	 * Nome do resultado do profiler de GC com os bytes alocados por operao.
+	 */
+	private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+	/**
+	 * Quantos bytes por operao podem aparecer sem contar como regresso, para
+	 * que uma linha de base de zero bytes no falhe por rudo do profiler.
+	 */
+	private static final double ALLOCATION_SLACK = 16;
+
+	private RegressionGate() {
+	}
+
+	public static void main(String[] args) throws IOException, RunnerException {
+		if (args.length == 0) {
+			System.err.println("Uso: RegressionGate BASELINE [--record] [--include=REGEX] [--tolerance=PCT]");
+			System.exit(2);
+		}
+
+		Path baseline = Paths.get(args[0]);
+		boolean record = false;
+		String include = ".*Benchmark.*";
+		double tolerance = 0.10;
+
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("--record")) {
+				record = true;
+			}
+
+			else if (args[i].startsWith("--include=")) {
+				include = args[i].substring("--include=".length());
+			}
+
+			else if (args[i].startsWith("--tolerance=")) {
+				tolerance = Double.parseDouble(args[i].substring("--tolerance=".length())) / 100;
+			}
+
+			else {
+				System.err.println("Opo desconhecida: " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().include(include).addProfiler(GCProfiler.class);
+		Map<String, Double> results = scores(new Runner(options.build()).run());
+
+		if (record) {
+			write(baseline, results);
+			System.out.println("Linha de base gravada em " + baseline + ".");
+			return;
+		}
+
+		int regressions = compare(read(baseline), results, tolerance);
+
+		if (regressions > 0) {
+			System.out.println(regressions + " regresso(es) acima de " + Math.round(tolerance * 100) + "%.");
+			System.exit(1);
+		}
+
+		System.out.println("Nenhuma regresso acima de " + Math.round(tolerance * 100) + "%.");
+	}
+
+	/**
+	 * Retorna a pontuao de cada benchmark, com os seus parmetros e modo, e os
+	 * bytes alocados por operao de cada um.
+	 */
+	private static Map<String, Double> scores(Collection<RunResult> runs) {
+		Map<String, Double> scores = new TreeMap<>();
+
+		for (RunResult run : runs) {
+			String key = keyOf(run.getParams());
+			scores.put(key, run.getPrimaryResult().getScore());
+
+			Result<?> allocation = run.getSecondaryResults().get(ALLOCATION);
+
+			if (allocation != null) {
+				scores.put(key + " " + ALLOCATION, allocation.getScore());
+			}
+		}
+
+		return scores;
+	}
+
+	/**
+	 * Retorna "benchmark(param=valor,...) modo" para um benchmark.
+	 */
+	private static String keyOf(BenchmarkParams params) {
+		StringBuilder key = new StringBuilder(params.getBenchmark());
+		String separator = "(";
+
+		for (String name : params.getParamsKeys()) {
+			key.append(separator).append(name).append('=').append(params.getParam(name));
+			separator = ",";
+		}
+
+		if (!separator.equals("(")) {
+			key.append(')');
+		}
+
+		return key.append(' ').append(params.getMode().shortLabel()).toString();
+	}
+
+	/**
+	 * Imprime cada resultado ao lado da linha de base e retorna quantos pioraram
+	 * mais que a tolerncia. Benchmarks sem linha de base so apenas listados.
+	 */
+	private static int compare(Map<String, Double> baseline, Map<String, Double> results, double tolerance) {
+		int regressions = 0;
+
+		for (Map.Entry<String, Double> result : results.entrySet()) {
+			String key = result.getKey();
+			double score = result.getValue();
+			Double base = baseline.get(key);
+
+			if (base == null) {
+				System.out.printf("NOVO      %s: %.3f%n", key, score);
+				continue;
+			}
+
+			boolean regressed;
+
+			if (key.endsWith(ALLOCATION)) {
+				regressed = score > base * (1 + tolerance) + ALLOCATION_SLACK;
+			}
+
+			else if (key.endsWith(" " + Mode.Throughput.shortLabel())) {
+				regressed = score < base * (1 - tolerance);
+			}
+
+			else {
+				regressed = score > base * (1 + tolerance);
+			}
+
+			if (regressed) {
+				regressions++;
+			}
+
+			System.out.printf("%-9s %s: %.3f (base %.3f)%n", regressed ? "REGRESSO" : "ok", key, score, base);
+		}
+
+		return regressions;
+	}
+
+	private static Map<String, Double> read(Path file) throws IOException {
+		Properties properties = new Properties();
+
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+
+		Map<String, Double> values = new TreeMap<>();
+
+		for (String key : properties.stringPropertyNames()) {
+			values.put(key, Double.parseDouble(properties.getProperty(key)));
+		}
+
+		return values;
+	}
+
+	private static void write(Path file, Map<String, Double> values) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, Double> value : values.entrySet()) {
+				// Espaos na chave precisam ser escapados no formato de Properties.
+				writer.write(value.getKey().replace(" ", "\\ ") + "=" + value.getValue() + "\n");
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package jogodavelha;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Um cliente do protocolo do ServerGame que vive na memria, para que uma
+ * sesso inteira possa ser medida sem sockets nem threads.
+ *
+ * O servidor escreve em sink () e l deste fluxo. Cada linha que o servidor
+ * escreve j prepara a resposta do cliente: para um quadro, a primeira posio
+ * livre; para um resultado ("#P", "#C" ou "#T"), "#NG" at completar o nmero
+ * de jogos pedido e "#CG" no ltimo. available () retorna apenas a resposta
+ * pendente, ento nenhum leitor tenta ler alm dela.
+ */
+final class ScriptedClient extends InputStream {
+	/**
+	 * Quantos jogos a sesso deve ter e quantos j terminaram.
+	 */
+	private final int games;
+	private int finished = 0;
+
+	/**
+	 * A linha que o servidor est escrevendo.
+	 */
+	private final byte[] line = new byte[64];
+	private int lineLength = 0;
+
+	/**
+	 * A resposta pendente do cliente e quanto dela j foi lido.
+	 */
+	private byte[] reply = new byte[0];
+	private int replyPosition = 0;
+
+	/**
+	 * Recebe o que o servidor escreve.
+	 */
+	private final OutputStream sink = new OutputStream() {
+		@Override
+		public void write(int b) {
+			if (b == '\n') {
+				answer();
+				lineLength = 0;
+			}
+
+			else if (lineLength < line.length) {
+				line[lineLength++] = (byte) b;
+			}
+		}
+	};
+
+	/**
+	 * Estabelece um cliente que joga games jogos e encerra a sesso.
+	 */
+	ScriptedClient(int games) {
+		this.games = games;
+	}
+
+	/**
+	 * Retorna o fluxo em que o servidor deve escrever.
+	 */
+	OutputStream sink() {
+		return sink;
+	}
+
+	/**
+	 * Retorna quantos jogos terminaram.
+	 */
+	int getFinished() {
+		return finished;
+	}
+
+	private void answer() {
+		if (lineLength > 0 && line[0] == '#') {
+			finished++;
+			reply = (finished < games ? "#NG\n" : "#CG\n").getBytes(StandardCharsets.US_ASCII);
+		}
+
+		else {
+			// Pule as dimenses ("NxN/K:") das grades maiores que a clssica.
+			int start = 0;
+
+			for (int i = 0; i < lineLength; i++) {
+				if (line[i] == ':') {
+					start = i + 1;
+				}
+			}
+
+			int move = 0;
+
+			while (start + move < lineLength && line[start + move] != '-') {
+				move++;
+			}
+
+			reply = (move + "\n").getBytes(StandardCharsets.US_ASCII);
+		}
+
+		replyPosition = 0;
+	}
+
+	@Override
+	public int read() {
+		return (replyPosition < reply.length) ? reply[replyPosition++] : -1;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+
+		int count = Math.min(length, reply.length - replyPosition);
+
+		if (count <= 0) {
+			return -1;
+		}
+
+		System.arraycopy(reply, replyPosition, buffer, offset, count);
+		replyPosition += count;
+
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return reply.length - replyPosition;
+	}
+}
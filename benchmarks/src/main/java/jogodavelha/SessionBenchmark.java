@@ -0,0 +1,73 @@
+package jogodavelha;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mede uma sesso completa do ServerGame, do primeiro quadro at "#CG", contra
+ * um ScriptedClient em memria. Inclui o protocolo, a busca do computador e a
+ * criao dos fluxos da conexo, bufferizados como no Server. Quem comea cada
+ * jogo  sorteado, como no servidor, ento o resultado  a mdia das duas
+ * ordens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+	/**
+	 * Quantos jogos cada sesso tem. A tabela de transposio da sesso 
+	 * reaproveitada entre os jogos.
+	 */
+	@Param({ "1", "5" })
+	public int games;
+
+	private PrintStream console;
+
+	/**
+	 * O ServerGame narra cada jogo em System.out; a narrao no faz parte da
+	 * medida.
+	 */
+	@Setup
+	public void silence() {
+		console = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@TearDown
+	public void restore() {
+		System.setOut(console);
+	}
+
+	@Benchmark
+	public int session() throws Exception {
+		ScriptedClient client = new ScriptedClient(games);
+		BufferedReader input = new BufferedReader(new InputStreamReader(client, StandardCharsets.US_ASCII));
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(client.sink(), 1024));
+
+		new ServerGame(input, output).start();
+
+		return client.getFinished();
+	}
+}
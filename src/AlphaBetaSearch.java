@@ -0,0 +1,525 @@
+import java.util.Arrays;
+
+/**
+ * Busca negamax com poda alfa-beta. Ao contrrio do minimax de bestGuess (),
+ * cada n  avaliado do ponto de vista de quem tem a vez, e os ramos que no
+ * podem mudar o resultado so descartados.
+ *
+ * As jogadas so ordenadas para que as podas aconteam cedo: primeiro as que
+ * vencem o jogo, depois as que bloqueiam uma vitria do adversrio e, por fim,
+ * as posies por onde passam mais linhas vencedoras (no 3x3: centro, cantos e
+ * bordas). Em grades grandes, s so consideradas as posies vizinhas de alguma
+ * marca, pois as demais quase nunca influenciam o resultado.
+ *
+ * Opcionalmente, os valores das posies so guardados em uma
+ * TranspositionTable, que reconhece a mesma posio vinda de outra ordem de
+ * jogadas ou de uma rotao ou reflexo do tabuleiro.
+ *
+ * Uma instncia guarda listas de jogadas reutilizveis e contadores, ento no
+ * deve ser compartilhada entre threads.
+ */
+public class AlphaBetaSearch implements SearchStrategy {
+	/**
+	 * Valores usados na avaliao. Uma vitria vale WIN_SCORE mais o nmero de
+	 * posies ainda livres, para que vitrias mais rpidas (e derrotas mais
+	 * demoradas) sejam preferidas. Empates valem 0, e os ns no limite de
+	 * profundidade valem a estimativa de JogoDaVelha.evaluate (), que fica sempre
+	 * abaixo de uma vitria.
+	 */
+	private static final int WIN_SCORE = 1000000;
+	static final int INFINITY = 100000000;
+
+	/**
+	 * Grades com mais posies do que isto s consideram as posies vizinhas de
+	 * alguma marca.
+	 */
+	private static final int FULL_WIDTH_CELLS = 16;
+
+	/**
+	 * A cada quantos ns a busca confere se o prazo acabou.
+	 */
+	private static final int DEADLINE_CHECK_NODES = 1024;
+
+	/**
+	 * Diferencia, na tabela de transposio, a mesma posio com a vez do
+	 * computador ou do jogador.
+	 */
+	private static final long COMPUTER_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * Quantas jogadas  frente a busca examina.
+	 */
+	private int depth;
+
+	/**
+	 * A tabela de transposio consultada pela busca, ou null para no usar uma.
+	 */
+	private final TranspositionTable table;
+
+	/**
+	 * A ordem esttica das posies para as dimenses orderSize e orderWinLength,
+	 * calculada na primeira busca com essas dimenses.
+	 */
+	private int[] staticOrder;
+	private int orderSize = 0;
+	private int orderWinLength = 0;
+
+	/**
+	 * Listas de jogadas ordenadas, uma para cada nvel da rvore, e reas de
+	 * trabalho usadas ao orden-las.
+	 */
+	private int[][] moveLists = new int[0][0];
+	private int[] candidates = new int[0];
+	private int[] classes = new int[0];
+
+	/**
+	 * O instante (em System.nanoTime ()) em que a busca deve ser interrompida, ou 0
+	 * para buscar sem prazo, e se a ltima busca foi interrompida.
+	 */
+	private long deadline = 0;
+	private boolean aborted = false;
+
+	/**
+	 * Uma jogada a ser examinada antes das demais na raiz, ou -1.
+	 */
+	private int preferredMove = -1;
+
+	/**
+	 * Contadores da ltima busca: ns visitados e podas feitas.
+	 */
+	private long nodeCount = 0;
+	private long cutoffCount = 0;
+
+	/**
+	 * Estabelece uma busca que vai at o fim do jogo.
+	 */
+	public AlphaBetaSearch() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Estabelece uma busca que examina no mximo depth jogadas  frente.
+	 */
+	public AlphaBetaSearch(int depth) {
+		this(depth, null);
+	}
+
+	/**
+	 * Estabelece uma busca que vai at o fim do jogo e guarda as posies na tabela
+	 * indicada.
+	 */
+	public AlphaBetaSearch(TranspositionTable table) {
+		this(Integer.MAX_VALUE, table);
+	}
+
+	/**
+	 * Estabelece uma busca que examina no mximo depth jogadas  frente e guarda as
+	 * posies na tabela indicada.
+	 */
+	public AlphaBetaSearch(int depth, TranspositionTable table) {
+		this.depth = depth;
+		this.table = table;
+	}
+
+	public int bestMove(JogoDaVelha game) {
+		nodeCount = 0;
+		cutoffCount = 0;
+		aborted = false;
+
+		prepare(game);
+
+		int alpha = -INFINITY;
+		int best = -1;
+
+		int count = orderMoves(game, game.getCOMPUTER_TURN(), game.getPLAYER_TURN(), 0);
+		int[] moves = moveLists[0];
+
+		for (int i = 0; i < count; i++) {
+			int value = searchMove(game, moves[i], alpha, INFINITY);
+
+			// O prazo acabou: a jogada encontrada at aqui no  confivel.
+			if (aborted) {
+				break;
+			}
+
+			// Em caso de empate fica a primeira jogada na ordem, que  a mais promissora.
+			if (best == -1 || value > alpha) {
+				alpha = value;
+				best = moves[i];
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Copia para moves as jogadas do computador na ordem em que bestMove () as
+	 * examina e retorna quantas so. O vetor deve ter uma posio para cada
+	 * posio da grade.
+	 */
+	public int rootMoves(JogoDaVelha game, int[] moves) {
+		prepare(game);
+
+		int count = orderMoves(game, game.getCOMPUTER_TURN(), game.getPLAYER_TURN(), 0);
+		System.arraycopy(moveLists[0], 0, moves, 0, count);
+
+		return count;
+	}
+
+	/**
+	 * Retorna o valor, para o computador, de fazer a jogada move, buscado com a
+	 * janela [alpha, beta] exatamente como bestMove () faria. Os contadores passam a
+	 * se referir a esta busca.
+	 */
+	public int scoreMove(JogoDaVelha game, int move, int alpha, int beta) {
+		nodeCount = 0;
+		cutoffCount = 0;
+		aborted = false;
+
+		prepare(game);
+
+		return searchMove(game, move, alpha, beta);
+	}
+
+	/**
+	 * Faz a jogada move para o computador, busca a resposta do jogador e desfaz a
+	 * jogada.
+	 */
+	private int searchMove(JogoDaVelha game, int move, int alpha, int beta) {
+		int computer = game.getCOMPUTER_TURN();
+		int player = game.getPLAYER_TURN();
+
+		game.placePiece(computer, move);
+		int value = -negamax(game, player, computer, depth - 1, 1, -beta, -alpha);
+		game.undoPiece();
+
+		return value;
+	}
+
+	/**
+	 * Retorna o valor do jogo para side, que tem a vez, com a janela [alpha, beta].
+	 */
+	private int negamax(JogoDaVelha game, int side, int opponent, int depth, int ply, int alpha, int beta) {
+		nodeCount++;
+
+		// Confira o prazo de tempos em tempos; depois de interrompida, a busca s
+		// desfaz as jogadas e retorna.
+		if (deadline != 0 && nodeCount % DEADLINE_CHECK_NODES == 0 && System.nanoTime() > deadline) {
+			aborted = true;
+		}
+
+		if (aborted) {
+			return 0;
+		}
+
+		// O jogo terminou: ou est empatado ou quem acabou de jogar venceu.
+		int result = game.result();
+		if (result == 3) {
+			return 0;
+		}
+
+		if (result != 0) {
+			return -(WIN_SCORE + game.getCells() - game.getNumMoves());
+		}
+
+		if (depth <= 0) {
+			return Math.max(-(WIN_SCORE - 1), Math.min(WIN_SCORE - 1, game.evaluate(side)));
+		}
+
+		// Buscar alm das posies livres no muda nada, ento a profundidade
+		// guardada na tabela  limitada a elas.
+		int free = game.getCells() - game.getNumMoves();
+		if (depth > free) {
+			depth = free;
+		}
+
+		int alphaOrig = alpha;
+		long key = 0;
+
+		if (table != null) {
+			key = game.canonicalHash() ^ (side == game.getCOMPUTER_TURN() ? COMPUTER_TO_MOVE : 0);
+			long entry = table.probe(key);
+
+			if (entry != TranspositionTable.MISS && TranspositionTable.depthOf(entry) >= depth) {
+				int value = TranspositionTable.valueOf(entry);
+
+				switch (TranspositionTable.boundOf(entry)) {
+				case TranspositionTable.EXACT:
+					return value;
+				case TranspositionTable.LOWER_BOUND:
+					alpha = Math.max(alpha, value);
+					break;
+				case TranspositionTable.UPPER_BOUND:
+					beta = Math.min(beta, value);
+					break;
+				}
+
+				if (alpha >= beta) {
+					return value;
+				}
+			}
+		}
+
+		int count = orderMoves(game, side, opponent, ply);
+		int[] moves = moveLists[ply];
+		int best = -INFINITY;
+
+		for (int i = 0; i < count; i++) {
+			game.placePiece(side, moves[i]);
+			int value = -negamax(game, opponent, side, depth - 1, ply + 1, -beta, -alpha);
+			game.undoPiece();
+
+			if (aborted) {
+				return 0;
+			}
+
+			if (value > best) {
+				best = value;
+			}
+
+			if (best > alpha) {
+				alpha = best;
+			}
+
+			// O adversrio j tem algo melhor em outro ramo: o resto no importa.
+			if (alpha >= beta) {
+				cutoffCount++;
+				break;
+			}
+		}
+
+		if (table != null) {
+			int bound = TranspositionTable.EXACT;
+
+			if (best <= alphaOrig) {
+				bound = TranspositionTable.UPPER_BOUND;
+			}
+
+			else if (best >= beta) {
+				bound = TranspositionTable.LOWER_BOUND;
+			}
+
+			table.store(key, best, depth, bound);
+		}
+
+		return best;
+	}
+
+	/**
+	 * Prepara a ordem esttica e as listas de jogadas para as dimenses do jogo.
+	 */
+	private void prepare(JogoDaVelha game) {
+		int cells = game.getCells();
+
+		if (game.getSize() != orderSize || game.getWinLength() != orderWinLength) {
+			staticOrder = buildStaticOrder(game.getSize(), game.getWinLength());
+			orderSize = game.getSize();
+			orderWinLength = game.getWinLength();
+			candidates = new int[cells];
+			classes = new int[cells];
+		}
+
+		// Uma lista para cada jogada que a busca pode fazer, mais a raiz.
+		int plies = Math.min(depth, cells - game.getNumMoves()) + 1;
+
+		if (moveLists.length == 0 || moveLists[0].length != cells) {
+			moveLists = new int[plies][cells];
+		}
+
+		// Uma busca mais funda aproveita as listas que j existem e cria s as que
+		// faltam.
+		else if (moveLists.length < plies) {
+			int old = moveLists.length;
+			moveLists = Arrays.copyOf(moveLists, plies);
+
+			for (int i = old; i < plies; i++) {
+				moveLists[i] = new int[cells];
+			}
+		}
+	}
+
+	/**
+	 * Preenche moveLists[ply] com as jogadas de side na ordem de busca e retorna
+	 * quantas so.
+	 */
+	private int orderMoves(JogoDaVelha game, int side, int opponent, int ply) {
+		int[] moves = moveLists[ply];
+		int[] free = game.getMoves();
+		int size = game.getSize();
+		boolean nearOnly = game.getCells() > FULL_WIDTH_CELLS && game.getNumMoves() > 0;
+		int count = 0;
+
+		// Separe as jogadas em vitrias (0), bloqueios (1) e as demais (2), mantendo a
+		// ordem esttica dentro de cada grupo.
+		for (int move : staticOrder) {
+			if (free[move] == 0 || (nearOnly && !hasNeighbour(free, size, move))) {
+				continue;
+			}
+
+			candidates[count] = move;
+
+			if (game.isWinningMove(side, move)) {
+				classes[count] = 0;
+			}
+
+			else if (game.isWinningMove(opponent, move)) {
+				classes[count] = 1;
+			}
+
+			else {
+				classes[count] = 2;
+			}
+
+			count++;
+		}
+
+		int ordered = 0;
+
+		for (int group = 0; group <= 2; group++) {
+			for (int i = 0; i < count; i++) {
+				if (classes[i] == group) {
+					moves[ordered++] = candidates[i];
+				}
+			}
+		}
+
+		// Na raiz, a jogada preferida (normalmente a melhor de uma busca anterior) vai
+		// para a frente, se estiver entre as candidatas.
+		if (ply == 0 && preferredMove >= 0) {
+			for (int i = 1; i < ordered; i++) {
+				if (moves[i] == preferredMove) {
+					System.arraycopy(moves, 0, moves, 1, i);
+					moves[0] = preferredMove;
+					break;
+				}
+			}
+		}
+
+		return ordered;
+	}
+
+	/**
+	 * Retorna true se alguma posio vizinha de move estiver ocupada.
+	 */
+	private static boolean hasNeighbour(int[] free, int size, int move) {
+		int row = move / size;
+		int col = move % size;
+
+		for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++) {
+			for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++) {
+				if (free[r * size + c] == 0) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Ordena as posies de uma grade size x size pelo nmero de linhas vencedoras
+	 * que passam por elas e, em caso de empate, pela distncia ao centro.
+	 */
+	private static int[] buildStaticOrder(int size, int winLength) {
+		int cells = size * size;
+		Integer[] order = new Integer[cells];
+		int[] lines = new int[cells];
+		int[] distance = new int[cells];
+
+		for (int i = 0; i < cells; i++) {
+			int row = i / size;
+			int col = i % size;
+
+			order[i] = i;
+			lines[i] = countLines(size, winLength, row, col, 0, 1) + countLines(size, winLength, row, col, 1, 0)
+					+ countLines(size, winLength, row, col, 1, 1) + countLines(size, winLength, row, col, 1, -1);
+			distance[i] = Math.abs(2 * row - (size - 1)) + Math.abs(2 * col - (size - 1));
+		}
+
+		Arrays.sort(order, (a, b) -> (lines[a] != lines[b]) ? lines[b] - lines[a] : distance[a] - distance[b]);
+
+		int[] result = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			result[i] = order[i];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Conta as sequncias de winLength posies na direo (rowStep, colStep) que
+	 * cabem na grade e passam por (row, col).
+	 */
+	private static int countLines(int size, int winLength, int row, int col, int rowStep, int colStep) {
+		int count = 0;
+
+		for (int start = -(winLength - 1); start <= 0; start++) {
+			int firstRow = row + start * rowStep, firstCol = col + start * colStep;
+			int lastRow = firstRow + (winLength - 1) * rowStep, lastCol = firstCol + (winLength - 1) * colStep;
+
+			if (firstRow >= 0 && firstRow < size && firstCol >= 0 && firstCol < size && lastRow >= 0
+					&& lastRow < size && lastCol >= 0 && lastCol < size) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Define o instante, em System.nanoTime (), em que as prximas buscas devem ser
+	 * interrompidas. Use 0 para buscar sem prazo.
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Retorna true se a ltima busca foi interrompida pelo prazo; nesse caso a
+	 * jogada retornada no deve ser usada.
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Define uma jogada a ser examinada antes das demais na raiz, ou -1 para usar
+	 * apenas a ordem normal.
+	 */
+	public void setPreferredMove(int preferredMove) {
+		this.preferredMove = preferredMove;
+	}
+
+	/**
+	 * Retorna quantas jogadas  frente a busca examina.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Define quantas jogadas  frente as prximas buscas examinam. Permite
+	 * aprofundar a busca sem criar outra a cada profundidade.
+	 */
+	public void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Retorna a tabela de transposio usada pela busca, ou null se no houver.
+	 */
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Retorna quantas podas alfa-beta a ltima chamada de bestMove () fez.
+	 */
+	public long getCutoffCount() {
+		return cutoffCount;
+	}
+}
@@ -0,0 +1,91 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * O protocolo binrio, negociado como alternativa ao protocolo de texto.
+ *
+ * O cliente pede o protocolo binrio enviando HELLO como o primeiro byte da
+ * conexo. O servidor responde com uma linha de texto: "#B" seguido das
+ * dimenses no formato de drawBoard () (vazio no jogo clssico) se aceitar, ou
+ * "#L" se a sesso continuar no protocolo de texto. Em seguida, o servidor
+ * reenvia o estado atual do jogo no protocolo escolhido. Clientes que nunca
+ * enviam HELLO continuam com o protocolo de texto.
+ *
+ * No protocolo binrio o cliente envia um byte por comando: a posio da
+ * jogada, NEW_GAME ou CLOSE_GAME. O servidor envia quadros de FRAME_LENGTH
+ * bytes: as posies do jogador e as do computador como duas mscaras de bits
+ * de 16 bits (big-endian) e um byte de estado, YOUR_MOVE ou o resultado do
+ * jogo no formato de JogoDaVelha.result (). Por isso, s  aceito em grades de
+ * at 16 posies.
+ */
+public final class BinaryProtocol {
+	/**
+	 * Os comandos do cliente. Todos so bytes ASCII, ento passam intactos por um
+	 * leitor de texto.
+	 */
+	public static final int HELLO = 0x7F;
+	public static final int NEW_GAME = 0x7E;
+	public static final int CLOSE_GAME = 0x7D;
+
+	/**
+	 * O byte de estado de um quadro que pede a jogada do usurio.
+	 */
+	public static final int YOUR_MOVE = 0;
+
+	/**
+	 * O tamanho de um quadro enviado pelo servidor.
+	 */
+	public static final int FRAME_LENGTH = 5;
+
+	/**
+	 * O maior nmero de posies de uma grade no protocolo binrio.
+	 */
+	public static final int MAX_CELLS = 16;
+
+	/**
+	 * As respostas do servidor ao HELLO.
+	 */
+	public static final String ACCEPTED = "#B";
+	public static final String DECLINED = "#L";
+
+	private BinaryProtocol() {
+	}
+
+	/**
+	 * Retorna true se o jogo puder ser jogado no protocolo binrio.
+	 */
+	public static boolean supports(JogoDaVelha game) {
+		return game.getCells() <= MAX_CELLS;
+	}
+
+	/**
+	 * Retorna a resposta do servidor ao HELLO para o jogo, com a quebra de linha.
+	 */
+	public static byte[] reply(JogoDaVelha game) {
+		if (!supports(game)) {
+			return (DECLINED + "\n").getBytes(StandardCharsets.US_ASCII);
+		}
+
+		String board = game.drawBoard();
+
+		// As dimenses so o que vem antes das posies no quadro de texto.
+		return (ACCEPTED + board.substring(0, board.length() - game.getCells() - 1) + "\n")
+				.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Escreve o quadro do jogo com o estado indicado em buffer a partir de offset e
+	 * retorna FRAME_LENGTH.
+	 */
+	public static int encodeFrame(JogoDaVelha game, int status, byte[] buffer, int offset) {
+		int player = game.getPlayerBits();
+		int computer = game.getComputerBits();
+
+		buffer[offset] = (byte) (player >>> 8);
+		buffer[offset + 1] = (byte) player;
+		buffer[offset + 2] = (byte) (computer >>> 8);
+		buffer[offset + 3] = (byte) computer;
+		buffer[offset + 4] = (byte) status;
+
+		return FRAME_LENGTH;
+	}
+}
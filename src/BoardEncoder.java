@@ -0,0 +1,42 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Codifica o quadro de um JogoDaVelha, no mesmo formato de drawBoard (), em um
+ * buffer que  reaproveitado a cada vez. Depois que o buffer tem o tamanho da
+ * grade, codificar e enviar um quadro no cria nenhum objeto.
+ *
+ * Uma instncia no deve ser compartilhada entre threads.
+ */
+public class BoardEncoder {
+	private byte[] buffer = new byte[0];
+	private ByteBuffer view = ByteBuffer.wrap(buffer);
+
+	/**
+	 * Codifica o quadro atual do jogo e retorna o buffer com ele entre a posio 0
+	 * e o limite. O contedo s vale at a prxima codificao.
+	 */
+	public ByteBuffer encode(JogoDaVelha game) {
+		int length = game.getBoardLength();
+
+		if (buffer.length < length) {
+			buffer = new byte[length];
+			view = ByteBuffer.wrap(buffer);
+		}
+
+		game.encodeBoard(buffer, 0);
+		view.clear().limit(length);
+
+		return view;
+	}
+
+	/**
+	 * Codifica o quadro atual do jogo e o escreve em output de uma s vez.
+	 */
+	public void writeTo(JogoDaVelha game, OutputStream output) throws IOException {
+		ByteBuffer board = encode(game);
+
+		output.write(buffer, 0, board.limit());
+	}
+}
@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transmite um jogo em andamento aos espectadores conectados a ele (veja
+ * Spectators).
+ *
+ * Cada atualizao do jogo  codificada uma nica vez, em um quadro imutvel
+ * com a linha de drawBoard () e, se o jogo terminou, o resultado ("#P", "#C" ou
+ * "#T", do ponto de vista do jogador), e publicada em latest. Os bytes do
+ * quadro so escritos sem mudana em todas as conexes.
+ *
+ * Quem joga s publica o quadro e acorda os espectadores: cada espectador
+ * escreve na sua prpria thread, e sempre o quadro mais recente. Um espectador
+ * lento perde os quadros intermedirios em vez de atrasar o jogo, e um que
+ * fica mais de STALL_MILLIS milissegundos em uma s escrita  desconectado.
+ * Depois do fim da transmisso no h mais publicaes para notar a escrita
+ * parada, ento os espectadores que ainda estiverem conectados STALL_MILLIS
+ * milissegundos depois de close () so desconectados por uma thread  parte.
+ */
+public class Broadcast {
+	/**
+	 * Quanto tempo uma escrita pode ficar parada antes que o espectador seja
+	 * desconectado.
+	 */
+	static final long STALL_MILLIS = 1000;
+
+	/**
+	 * O quadro publicado quando a transmisso termina.
+	 */
+	private static final byte[] CLOSED = new byte[0];
+
+	/**
+	 * A thread que desconecta os espectadores que sobraram das transmisses
+	 * encerradas.
+	 */
+	private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread reaper = new Thread(task, "espectadores-parados");
+		reaper.setDaemon(true);
+		return reaper;
+	});
+
+	private static final byte[][] RESULTS = { new byte[0], "#P\n".getBytes(StandardCharsets.US_ASCII),
+			"#C\n".getBytes(StandardCharsets.US_ASCII), "#T\n".getBytes(StandardCharsets.US_ASCII) };
+
+	/**
+	 * Um espectador: a conexo, a thread que escreve nela e desde quando (em
+	 * System.nanoTime ()) a escrita atual est em andamento, ou 0.
+	 */
+	private static final class Viewer {
+		private final Socket socket;
+		private final Thread thread = Thread.currentThread();
+		private volatile long writingSince = 0;
+
+		private Viewer(Socket socket) {
+			this.socket = socket;
+		}
+	}
+
+	private final long id;
+	private final AtomicReference<byte[]> latest = new AtomicReference<>();
+	private final CopyOnWriteArrayList<Viewer> viewers = new CopyOnWriteArrayList<>();
+
+	Broadcast(long id) {
+		this.id = id;
+	}
+
+	/**
+	 * Retorna o nmero com que os espectadores pedem esta transmisso.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Retorna quantos espectadores esto conectados.
+	 */
+	public int getViewerCount() {
+		return viewers.size();
+	}
+
+	/**
+	 * Codifica o estado atual do jogo e o envia aos espectadores. Deve ser chamado
+	 * pela thread que altera o jogo, logo depois de cada alterao.
+	 */
+	public void publish(JogoDaVelha game) {
+		byte[] result = RESULTS[game.result()];
+		byte[] frame = new byte[game.getBoardLength() + result.length];
+		int length = game.encodeBoard(frame, 0);
+
+		System.arraycopy(result, 0, frame, length, result.length);
+		update(frame);
+	}
+
+	/**
+	 * Encerra a transmisso: os espectadores so desconectados depois de receber o
+	 * ltimo quadro, ou depois de STALL_MILLIS milissegundos se ainda no o
+	 * tiverem recebido.
+	 */
+	public void close() {
+		update(CLOSED);
+
+		if (!viewers.isEmpty()) {
+			REAPER.schedule(this::dropAll, STALL_MILLIS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Desconecta os espectadores que ainda esto conectados a uma transmisso
+	 * encerrada: todos os outros j saram de watch ().
+	 */
+	private void dropAll() {
+		for (Viewer viewer : viewers) {
+			drop(viewer);
+		}
+	}
+
+	private void update(byte[] frame) {
+		if (latest.getAndSet(frame) == CLOSED) {
+			latest.set(CLOSED);
+			return;
+		}
+
+		long now = System.nanoTime();
+
+		for (Viewer viewer : viewers) {
+			long since = viewer.writingSince;
+
+			if (since != 0 && now - since > STALL_MILLIS * 1000000L) {
+				drop(viewer);
+			}
+
+			else {
+				LockSupport.unpark(viewer.thread);
+			}
+		}
+	}
+
+	/**
+	 * Transmite o jogo pela conexo indicada at que a transmisso termine ou o
+	 * espectador seja desconectado. Roda na thread da conexo, que  quem escreve
+	 * nela; a conexo  fechada ao final.
+	 */
+	public void watch(Socket socket) throws IOException {
+		Viewer viewer = new Viewer(socket);
+		OutputStream output = socket.getOutputStream();
+		byte[] sent = null;
+
+		viewers.add(viewer);
+
+		try {
+			while (true) {
+				byte[] frame = latest.get();
+
+				// Nada de novo: espere a prxima publicao.
+				if (frame == sent || frame == null) {
+					LockSupport.park(this);
+					continue;
+				}
+
+				if (frame == CLOSED || socket.isClosed()) {
+					return;
+				}
+
+				viewer.writingSince = System.nanoTime();
+				output.write(frame);
+				output.flush();
+				viewer.writingSince = 0;
+				sent = frame;
+			}
+		}
+
+		finally {
+			viewers.remove(viewer);
+			socket.close();
+		}
+	}
+
+	/**
+	 * Desconecta um espectador que parou de ler. A escrita parada falha, e a
+	 * thread dele sai de watch ().
+	 */
+	private void drop(Viewer viewer) {
+		System.out.println("Um espectador do jogo " + id + " parou de ler e foi desconectado.");
+
+		try {
+			viewer.socket.close();
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+		}
+
+		LockSupport.unpark(viewer.thread);
+	}
+}
@@ -0,0 +1,113 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Busca que consulta um PositionCache antes de buscar. Se a posio, ou alguma
+ * das suas rotaes e reflexes, j estiver no cache, a jogada guardada 
+ * trazida de volta para a orientao atual e retornada sem busca nenhuma. Caso
+ * contrrio, a busca original  feita e a jogada escolhida  guardada.
+ *
+ * O cache pode ser compartilhado por vrias instncias em threads diferentes;
+ * cada instncia, assim como a busca que ela usa, deve ser usada por uma thread
+ * de cada vez.
+ */
+public class CachedSearch implements SearchStrategy {
+	private final SearchStrategy search;
+	private final PositionCache cache;
+
+	/**
+	 * Quantos ns a ltima chamada de bestMove () visitou: 0 quando a jogada veio
+	 * do cache.
+	 */
+	private long nodeCount = 0;
+
+	/**
+	 * Estabelece uma busca que guarda em cache as jogadas escolhidas por search.
+	 */
+	public CachedSearch(SearchStrategy search, PositionCache cache) {
+		this.search = search;
+		this.cache = cache;
+	}
+
+	public int bestMove(JogoDaVelha game) {
+		int symmetry = game.canonicalSymmetry();
+		long key = game.canonicalHash();
+		int cell = cache.get(key);
+
+		if (cell >= 0) {
+			int move = game.fromSymmetry(symmetry, cell);
+
+			// Uma coliso de hash poderia trazer uma jogada impossvel: nesse caso, busque.
+			if (game.legalMove(move)) {
+				nodeCount = 0;
+				return move;
+			}
+		}
+
+		int move = search.bestMove(game);
+		nodeCount = search.getNodeCount();
+
+		if (move >= 0) {
+			cache.put(key, game.toSymmetry(symmetry, move));
+		}
+
+		return move;
+	}
+
+	/**
+	 * Preenche o cache com a jogada do computador em todas as posies que podem
+	 * surgir nas primeiras plies jogadas de um jogo, comece quem comear, e
+	 * retorna quantas posies foram buscadas. O jogo deve estar vazio e volta ao
+	 * mesmo estado ao final.
+	 */
+	public int prepopulate(JogoDaVelha game, int plies) {
+		Set<Long> visited = new HashSet<>();
+
+		return prepopulate(game, plies, game.getCOMPUTER_TURN(), visited)
+				+ prepopulate(game, plies, game.getPLAYER_TURN(), visited);
+	}
+
+	private int prepopulate(JogoDaVelha game, int plies, int mover, Set<Long> visited) {
+		boolean computer = mover == game.getCOMPUTER_TURN();
+
+		// Cada posio  visitada uma vez para cada lado que pode ter a vez nela.
+		if (game.isOver() || !visited.add(game.canonicalHash() ^ (computer ? 0 : 1))) {
+			return 0;
+		}
+
+		int searched = 0;
+
+		if (computer) {
+			game.setWhoseTurn(mover);
+			bestMove(game);
+			searched++;
+		}
+
+		if (plies == 0) {
+			return searched;
+		}
+
+		int[] moves = new int[game.getCells()];
+		int count = game.legalMoves(moves);
+		int next = computer ? game.getPLAYER_TURN() : game.getCOMPUTER_TURN();
+
+		for (int i = 0; i < count; i++) {
+			game.placePiece(mover, moves[i]);
+			searched += prepopulate(game, plies - 1, next, visited);
+			game.undoPiece();
+		}
+
+		return searched;
+	}
+
+	/**
+	 * Retorna o cache usado por esta busca.
+	 */
+	public PositionCache getCache() {
+		return cache;
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+}
@@ -0,0 +1,446 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Anlise dos jogos guardados por um GameRecordLog, sem janela e sem servidor:
+ * as vitrias, derrotas e empates por quem comeou, por nvel de busca do
+ * computador e por jogada de abertura, e as posies em que os usurios mais
+ * perdem.
+ *
+ * Os arquivos so divididos em blocos de CHUNK_RECORDS registros, e os blocos
+ * so analisados em paralelo por um ForkJoinPool. Cada bloco  lido do disco
+ * aos poucos, em um buffer de tamanho fixo, e somado em uma Tally da thread
+ * que o l, ento a memria usada no depende do tamanho do arquivo; as Tally
+ * so juntadas no fim. As posies, identificadas pelo hash cannico de
+ * JogoDaVelha (o mesmo para posies simtricas), so contadas em LongLongMap,
+ * sem um objeto por posio.
+ *
+ * Uso: java GameAnalyzer [--threads=N] [--top=N] DIRETRIO|ARQUIVO...
+ */
+public class GameAnalyzer {
+	/**
+	 * Quantos registros cada tarefa l, e quantos de cada vez.
+	 */
+	private static final int CHUNK_RECORDS = 1 << 16;
+	private static final int READ_RECORDS = 1 << 10;
+
+	static int THREADS = Runtime.getRuntime().availableProcessors();
+	static int TOP = 10;
+	static List<Path> PATHS = new ArrayList<>();
+
+	/**
+	 * As dimenses da grade e o tamanho dos registros, lidos do cabealho dos
+	 * arquivos, que devem ser iguais em todos.
+	 */
+	private static int boardSize = 0;
+	private static int winLength = 0;
+	private static int recordSize = 0;
+
+	/**
+	 * Um trecho de um arquivo: count registros a partir do registro first.
+	 */
+	private static final class Chunk {
+		private final Path file;
+		private final long first;
+		private final long count;
+
+		Chunk(Path file, long first, long count) {
+			this.file = file;
+			this.first = first;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * As contagens de um conjunto de jogos. Os resultados seguem os cdigos de
+	 * JogoDaVelha.result (), com 0 para os jogos abandonados.
+	 */
+	static final class Tally {
+		private final int cells;
+
+		/**
+		 * Os resultados por quem comeou (1, o jogador, ou 2), por nvel de busca e
+		 * por quem fez a jogada de abertura e em que posio.
+		 */
+		private final long[][] byFirstTurn = new long[3][4];
+		private final long[][] byLevel = new long[256][4];
+		private final long[][] byOpening;
+
+		/**
+		 * Para cada posio deixada por uma jogada do usurio: em quantos jogos ela
+		 * apareceu, em quantos o usurio perdeu e, nas grades de at 32 posies, as
+		 * marcas de cada lado (as do jogador nos 32 bits de baixo).
+		 */
+		private final LongLongMap visits = new LongLongMap(1024);
+		private final LongLongMap losses = new LongLongMap(1024);
+		private final LongLongMap boards = new LongLongMap(1024);
+
+		private long games = 0;
+
+		Tally(int cells) {
+			this.cells = cells;
+			this.byOpening = new long[2 * cells][4];
+		}
+
+		/**
+		 * Soma um jogo, refazendo as jogadas em game.
+		 */
+		void add(ByteBuffer record, int offset, JogoDaVelha game, byte[] board) {
+			int firstTurn = record.get(offset + GameRecordLog.FIRST_TURN);
+			int result = record.get(offset + GameRecordLog.RESULT);
+			int level = record.get(offset + GameRecordLog.LEVEL) & 0xFF;
+			int moves = record.get(offset + GameRecordLog.MOVE_COUNT) & 0xFF;
+
+			games++;
+			byFirstTurn[firstTurn][result]++;
+			byLevel[level][result]++;
+
+			if (moves == 0) {
+				return;
+			}
+
+			byOpening[(firstTurn - 1) * cells + (record.get(offset + GameRecordLog.MOVES) & 0xFF)][result]++;
+
+			game.reset();
+
+			int turn = (firstTurn == 1) ? game.getPLAYER_TURN() : game.getCOMPUTER_TURN();
+
+			for (int i = 0; i < moves; i++) {
+				game.placePiece(turn, record.get(offset + GameRecordLog.MOVES + i) & 0xFF);
+
+				if (turn == game.getPLAYER_TURN()) {
+					long hash = game.canonicalHash();
+
+					if (visits.add(hash, 1) == 1 && cells <= 32) {
+						boards.put(hash, pack(game, board));
+					}
+
+					if (result == 2) {
+						losses.add(hash, 1);
+					}
+				}
+
+				turn = -turn;
+			}
+		}
+
+		/**
+		 * Junta as contagens de other a estas.
+		 */
+		Tally merge(Tally other) {
+			games += other.games;
+			addAll(byFirstTurn, other.byFirstTurn);
+			addAll(byLevel, other.byLevel);
+			addAll(byOpening, other.byOpening);
+			visits.addAll(other.visits);
+			losses.addAll(other.losses);
+
+			for (long hash : other.boards.keys()) {
+				if (boards.get(hash) == 0) {
+					boards.put(hash, other.boards.get(hash));
+				}
+			}
+
+			return this;
+		}
+
+		private static void addAll(long[][] to, long[][] from) {
+			for (int i = 0; i < to.length; i++) {
+				for (int j = 0; j < to[i].length; j++) {
+					to[i][j] += from[i][j];
+				}
+			}
+		}
+
+		/**
+		 * Guarda as marcas de cada lado em um long, a partir do quadro de
+		 * encodeBoard ().
+		 */
+		private long pack(JogoDaVelha game, byte[] board) {
+			int length = game.encodeBoard(board, 0);
+			long bits = 0;
+
+			for (int i = 0; i < cells; i++) {
+				byte mark = board[length - 1 - cells + i];
+
+				if (mark == '1') {
+					bits |= 1L << i;
+				}
+
+				else if (mark == '2') {
+					bits |= 1L << (32 + i);
+				}
+			}
+
+			return bits;
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		parseArguments(args);
+
+		List<Chunk> chunks = split();
+
+		if (chunks.isEmpty()) {
+			System.err.println("Nenhum jogo para analisar.");
+			return;
+		}
+
+		int cells = boardSize * boardSize;
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(THREADS);
+		Tally tally;
+
+		try {
+			tally = pool.submit(() -> chunks.parallelStream()
+					.map(chunk -> read(chunk, cells))
+					.reduce(Tally::merge)
+					.get()).get();
+		}
+
+		finally {
+			pool.shutdown();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%d jogos em %dx%d/%d analisados em %.2f s (%.0f jogos/s, %d threads).%n", tally.games,
+				boardSize, boardSize, winLength, seconds, tally.games / seconds, THREADS);
+
+		report(tally);
+	}
+
+	/**
+	 * L os cabealhos dos arquivos e os divide em blocos.
+	 */
+	static List<Chunk> split() throws IOException {
+		List<Chunk> chunks = new ArrayList<>();
+
+		for (Path path : PATHS) {
+			List<Path> files = Files.isDirectory(path) ? GameRecordLog.segments(path) : List.of(path);
+
+			for (Path file : files) {
+				ByteBuffer header = ByteBuffer.allocate(GameRecordLog.HEADER_SIZE);
+
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					while (header.hasRemaining() && channel.read(header) >= 0) {
+						continue;
+					}
+
+					if (header.hasRemaining() || header.getInt(0) != GameRecordLog.MAGIC
+							|| header.getInt(4) != GameRecordLog.VERSION) {
+						System.err.println("Arquivo ignorado, no  um registro de jogos: " + file);
+						continue;
+					}
+
+					if (recordSize == 0) {
+						boardSize = header.getInt(8);
+						winLength = header.getInt(12);
+						recordSize = header.getInt(16);
+					}
+
+					else if (header.getInt(8) != boardSize || header.getInt(12) != winLength) {
+						System.err.println("Arquivo ignorado, de outra grade: " + file);
+						continue;
+					}
+
+					// Um registro incompleto no fim do arquivo  ignorado.
+					long records = (channel.size() - GameRecordLog.HEADER_SIZE) / recordSize;
+
+					for (long first = 0; first < records; first += CHUNK_RECORDS) {
+						chunks.add(new Chunk(file, first, Math.min(CHUNK_RECORDS, records - first)));
+					}
+				}
+			}
+		}
+
+		return chunks;
+	}
+
+	/**
+	 * L e soma os jogos de um bloco.
+	 */
+	static Tally read(Chunk chunk, int cells) {
+		Tally tally = new Tally(cells);
+		JogoDaVelha game = new JogoDaVelha(boardSize, winLength);
+		byte[] board = new byte[game.getBoardLength()];
+		ByteBuffer buffer = ByteBuffer.allocateDirect(READ_RECORDS * recordSize);
+
+		try (FileChannel channel = FileChannel.open(chunk.file, StandardOpenOption.READ)) {
+			long position = GameRecordLog.HEADER_SIZE + chunk.first * recordSize;
+			long end = position + chunk.count * recordSize;
+
+			while (position < end) {
+				buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, position + buffer.position()) < 0) {
+						throw new IOException("O arquivo terminou antes do esperado: " + chunk.file);
+					}
+				}
+
+				for (int offset = 0; offset < buffer.limit(); offset += recordSize) {
+					tally.add(buffer, offset, game, board);
+				}
+
+				position += buffer.limit();
+			}
+		}
+
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return tally;
+	}
+
+	static void report(Tally tally) {
+		System.out.println();
+		System.out.println("Por quem comeou:");
+		printRow("jogador", tally.byFirstTurn[1]);
+		printRow("computador", tally.byFirstTurn[2]);
+
+		System.out.println();
+		System.out.println("Por nvel de busca do computador (0  a busca normal):");
+
+		for (int level = 0; level < tally.byLevel.length; level++) {
+			if (total(tally.byLevel[level]) > 0) {
+				printRow("nvel " + level, tally.byLevel[level]);
+			}
+		}
+
+		System.out.println();
+		System.out.println("Por jogada de abertura:");
+
+		for (int i = 0; i < tally.byOpening.length; i++) {
+			if (total(tally.byOpening[i]) > 0) {
+				printRow(((i < tally.cells) ? "jogador em " : "computador em ") + (i % tally.cells), tally.byOpening[i]);
+			}
+		}
+
+		System.out.println();
+		System.out.println("Posies, depois de uma jogada do usurio, em que ele mais perdeu:");
+
+		for (long hash : topLosses(tally)) {
+			long lost = tally.losses.get(hash);
+			long seen = tally.visits.get(hash);
+			String board = (tally.cells <= 32) ? draw(tally.boards.get(hash), tally.cells) : Long.toHexString(hash);
+
+			System.out.printf("  %-12s %d derrotas em %d jogos (%.1f%%)%n", board, lost, seen, 100.0 * lost / seen);
+		}
+	}
+
+	/**
+	 * Retorna as TOP posies com mais derrotas, da que tem mais  que tem menos.
+	 */
+	private static long[] topLosses(Tally tally) {
+		long[] hashes = tally.losses.keys();
+		long[] top = new long[Math.min(TOP, hashes.length)];
+		int count = 0;
+
+		// Uma insero ordenada basta, porque TOP  pequeno.
+		for (long hash : hashes) {
+			long lost = tally.losses.get(hash);
+			int i = count;
+
+			if (count < top.length) {
+				count++;
+			}
+
+			else if (lost <= tally.losses.get(top[count - 1])) {
+				continue;
+			}
+
+			else {
+				i = count - 1;
+			}
+
+			while (i > 0 && tally.losses.get(top[i - 1]) < lost) {
+				top[i] = top[i - 1];
+				i--;
+			}
+
+			top[i] = hash;
+		}
+
+		return top;
+	}
+
+	/**
+	 * Desenha as marcas de pack () como as posies de drawBoard ().
+	 */
+	private static String draw(long bits, int cells) {
+		StringBuilder board = new StringBuilder();
+
+		for (int i = 0; i < cells; i++) {
+			board.append(((bits >>> i) & 1) != 0 ? '1' : ((bits >>> (32 + i)) & 1) != 0 ? '2' : '-');
+		}
+
+		return board.toString();
+	}
+
+	private static long total(long[] results) {
+		return results[0] + results[1] + results[2] + results[3];
+	}
+
+	/**
+	 * Mostra uma linha do relatrio. Sem jogos, s a contagem  mostrada, em vez
+	 * de porcentagens de zero jogos.
+	 */
+	private static void printRow(String label, long[] results) {
+		long games = total(results);
+
+		if (games == 0) {
+			System.out.printf("  %-18s %9d jogos%n", label, games);
+			return;
+		}
+
+		System.out.printf("  %-18s %9d jogos: jogador %5.1f%%, computador %5.1f%%, empate %5.1f%%, abandonados %5.1f%%%n",
+				label, games, 100.0 * results[1] / games, 100.0 * results[2] / games, 100.0 * results[3] / games,
+				100.0 * results[0] / games);
+	}
+
+	static void parseArguments(String[] args) {
+		for (String arg : args) {
+			String[] option = arg.split("=", 2);
+
+			if (!arg.startsWith("--")) {
+				PATHS.add(Paths.get(arg));
+				continue;
+			}
+
+			if (option.length != 2) {
+				System.err.println("Opo ignorada: " + arg);
+				continue;
+			}
+
+			switch (option[0]) {
+			case "--threads":
+				THREADS = Integer.parseInt(option[1]);
+				break;
+			case "--top":
+				// Sem ao menos uma posio no h lista a mostrar.
+				int top = Integer.parseInt(option[1]);
+				if (top < 1) {
+					System.err.println("Opo ignorada, precisa ser ao menos 1: " + arg);
+					break;
+				}
+				TOP = top;
+				break;
+			default:
+				System.err.println("Opo ignorada: " + arg);
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registro de todos os jogos terminados (ou abandonados) pelo servidor, em
+ * arquivos em que os registros s so acrescentados.
+ *
+ * Cada jogo vira um registro de tamanho fixo (veja recordSize ()): quando
+ * comeou (em milissegundos desde 1970, 8 bytes), quanto durou, quanto tempo o
+ * usurio e o computador pensaram ao todo (em milissegundos, 4 bytes cada),
+ * quem comeou e o resultado (1 byte cada, nos cdigos de result (): 1 para o
+ * jogador e 2 para o computador; o resultado  0 se o jogo foi abandonado), o
+ * nvel de busca mais fraco usado pelo computador (1 byte, 0 para a busca
+ * normal; veja MoveScheduler), o nmero de jogadas (1 byte) e as posies das
+ * jogadas em ordem (1 byte cada, uma por posio da grade), completando um
+ * mltiplo de 8 bytes.
+ *
+ * Os arquivos ficam em um diretrio, com os nomes games-000001.log,
+ * games-000002.log..., e cada um guarda at segmentRecords registros depois de
+ * um cabealho de HEADER_SIZE bytes: MAGIC, VERSION, as dimenses da grade e o
+ * tamanho do registro, um int cada. Ao abrir o registro, um arquivo novo 
+ * comeado depois do ltimo existente.
+ *
+ * A sesso no escreve nada: append () codifica o registro e o pe em uma fila
+ * limitada, sem esperar. Uma thread  parte tira da fila tudo o que houver e
+ * escreve os registros no arquivo com uma s escrita. Se a fila estiver
+ * cheia, o registro  descartado e contado em getDroppedCount ().
+ */
+public class GameRecordLog {
+	/**
+	 * O cabealho de cada arquivo.
+	 */
+	public static final int HEADER_SIZE = 32;
+	public static final int MAGIC = 0x4A44564C;
+	public static final int VERSION = 1;
+
+	/**
+	 * As posies de cada campo no registro.
+	 */
+	public static final int STARTED_AT = 0;
+	public static final int ELAPSED = 8;
+	public static final int PLAYER_TIME = 12;
+	public static final int COMPUTER_TIME = 16;
+	public static final int FIRST_TURN = 20;
+	public static final int RESULT = 21;
+	public static final int LEVEL = 22;
+	public static final int MOVE_COUNT = 23;
+	public static final int MOVES = 24;
+
+	/**
+	 * Quantos registros podem esperar pela thread que escreve e quantos ela
+	 * escreve de uma vez.
+	 */
+	private static final int QUEUE_SIZE = 1 << 16;
+	private static final int BATCH_SIZE = 1024;
+
+	/**
+	 * Posto na fila por close () para que a thread que escreve termine.
+	 */
+	private static final byte[] END = new byte[0];
+
+	private final Path directory;
+	private final int boardSize;
+	private final int winLength;
+	private final int recordSize;
+	private final long segmentRecords;
+
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+	private final Thread writer;
+
+	/**
+	 * O arquivo atual, o seu nmero e quantos registros ele j tem. S so usados
+	 * pela thread que escreve.
+	 */
+	private FileChannel segment;
+	private int segmentNumber;
+	private long segmentCount;
+
+	private final LongAdder written = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	private GameRecordLog(Path directory, int boardSize, int winLength, long segmentRecords) {
+		this.directory = directory;
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+		this.recordSize = recordSize(boardSize * boardSize);
+		this.segmentRecords = segmentRecords;
+		this.writer = new Thread(this::write, "registro-jogos");
+	}
+
+	/**
+	 * Abre o registro no diretrio indicado, para jogos em uma grade boardSize x
+	 * boardSize, com at segmentRecords registros por arquivo.
+	 */
+	public static GameRecordLog open(Path directory, int boardSize, int winLength, long segmentRecords)
+			throws IOException {
+		GameRecordLog log = new GameRecordLog(directory, boardSize, winLength, segmentRecords);
+
+		Files.createDirectories(directory);
+		log.segmentNumber = lastSegment(directory);
+		log.roll();
+		log.writer.setDaemon(true);
+		log.writer.start();
+
+		return log;
+	}
+
+	/**
+	 * Retorna true se os jogos puderem ser registrados: cada posio e o nmero
+	 * de jogadas precisam caber em um byte.
+	 */
+	public static boolean supports(JogoDaVelha game) {
+		return game.getCells() <= 255;
+	}
+
+	/**
+	 * Retorna o tamanho de um registro para uma grade com o nmero de posies
+	 * indicado.
+	 */
+	public static int recordSize(int cells) {
+		return (MOVES + cells + 7) & ~7;
+	}
+
+	/**
+	 * Retorna os arquivos do registro no diretrio indicado, em ordem.
+	 */
+	public static List<Path> segments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<>();
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "games-*.log")) {
+			for (Path file : files) {
+				segments.add(file);
+			}
+		}
+
+		segments.sort(null);
+
+		return segments;
+	}
+
+	/**
+	 * Os tempos de um jogo em andamento, acumulados pela sesso que o joga.
+	 */
+	public static final class Timings {
+		private long startedAt;
+		private long start;
+		private long playerTime;
+		private long computerTime;
+		private int level;
+
+		/**
+		 * Comea a contar um novo jogo.
+		 */
+		public void start() {
+			startedAt = System.currentTimeMillis();
+			start = System.nanoTime();
+			playerTime = 0;
+			computerTime = 0;
+			level = 0;
+		}
+
+		/**
+		 * Retorna true se um jogo foi comeado com start ().
+		 */
+		public boolean isStarted() {
+			return start != 0;
+		}
+
+		/**
+		 * Soma o tempo, em nanossegundos, de uma jogada do usurio.
+		 */
+		public void playerMoved(long nanos) {
+			playerTime += nanos;
+		}
+
+		/**
+		 * Soma o tempo, em nanossegundos, de uma jogada do computador, feita com a
+		 * busca do nvel indicado.
+		 */
+		public void computerMoved(long nanos, int level) {
+			computerTime += nanos;
+			this.level = Math.max(this.level, level);
+		}
+	}
+
+	/**
+	 * Registra um jogo, que j terminou ou foi abandonado, com os seus tempos.
+	 * No espera a escrita; retorna false se o registro foi descartado porque a
+	 * fila estava cheia.
+	 */
+	public boolean append(JogoDaVelha game, Timings timings) {
+		ByteBuffer record = ByteBuffer.allocate(recordSize);
+		int moves = game.getNumMoves();
+
+		record.putLong(STARTED_AT, timings.startedAt);
+		record.putInt(ELAPSED, millis(System.nanoTime() - timings.start));
+		record.putInt(PLAYER_TIME, millis(timings.playerTime));
+		record.putInt(COMPUTER_TIME, millis(timings.computerTime));
+		record.put(FIRST_TURN, (byte) ((game.getFirstTurn() == game.getPLAYER_TURN()) ? 1 : 2));
+		record.put(RESULT, (byte) game.result());
+		record.put(LEVEL, (byte) timings.level);
+		record.put(MOVE_COUNT, (byte) moves);
+
+		for (int i = 0; i < moves; i++) {
+			record.put(MOVES + i, (byte) game.getMove(i));
+		}
+
+		if (!queue.offer(record.array())) {
+			dropped.increment();
+			return false;
+		}
+
+		return true;
+	}
+
+	private static int millis(long nanos) {
+		return (int) Math.min(nanos / 1000000L, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Escreve os registros que ainda esto na fila e fecha o arquivo atual.
+	 */
+	public void close() throws InterruptedException {
+		queue.put(END);
+		writer.join();
+	}
+
+	/**
+	 * Retorna quantos registros j foram escritos.
+	 */
+	public long getWrittenCount() {
+		return written.sum();
+	}
+
+	/**
+	 * Retorna quantos registros foram descartados porque a fila estava cheia ou a
+	 * escrita deles falhou.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * O trabalho da thread que escreve: espera o primeiro registro, junta os que
+	 * chegaram com ele e escreve todos de uma vez. S contam como escritos os
+	 * registros que chegaram ao arquivo; os que estavam no lote de uma escrita que
+	 * falhou, ou que chegaram depois de close (), contam como descartados.
+	 */
+	private void write() {
+		List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_SIZE * recordSize);
+		boolean closing = false;
+
+		while (!closing) {
+			int records = 0;
+			int buffered = 0;
+
+			try {
+				batch.add(queue.take());
+				queue.drainTo(batch, BATCH_SIZE - 1);
+				records = batch.size();
+
+				// S os registros do mesmo arquivo vo na mesma escrita.
+				buffer.clear();
+
+				for (byte[] record : batch) {
+					if (record == END) {
+						closing = true;
+						records--;
+						continue;
+					}
+
+					if (closing) {
+						continue;
+					}
+
+					if (segmentCount == segmentRecords) {
+						flush(buffer);
+						written.add(buffered);
+						records -= buffered;
+						buffered = 0;
+						roll();
+					}
+
+					buffer.put(record);
+					segmentCount++;
+					buffered++;
+				}
+
+				flush(buffer);
+				written.add(buffered);
+				records -= buffered;
+			}
+
+			catch (InterruptedException e) {
+				closing = true;
+			}
+
+			catch (IOException e) {
+				System.err.println(e);
+			}
+
+			dropped.add(records);
+			batch.clear();
+		}
+
+		try {
+			segment.force(false);
+			segment.close();
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Escreve no arquivo atual o que estiver no buffer.
+	 */
+	private void flush(ByteBuffer buffer) throws IOException {
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			segment.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Fecha o arquivo atual, se houver um, e comea o prximo.
+	 */
+	private void roll() throws IOException {
+		if (segment != null) {
+			segment.force(false);
+			segment.close();
+		}
+
+		segmentNumber++;
+		segment = FileChannel.open(directory.resolve(String.format("games-%06d.log", segmentNumber)),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		segmentCount = 0;
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+		header.putInt(MAGIC).putInt(VERSION).putInt(boardSize).putInt(winLength).putInt(recordSize);
+		header.clear();
+
+		while (header.hasRemaining()) {
+			segment.write(header);
+		}
+	}
+
+	/**
+	 * Retorna o nmero do ltimo arquivo do diretrio, ou 0 se no houver nenhum.
+	 */
+	private static int lastSegment(Path directory) throws IOException {
+		int last = 0;
+
+		for (Path file : segments(directory)) {
+			String name = file.getFileName().toString();
+
+			try {
+				last = Math.max(last, Integer.parseInt(name.substring(6, name.length() - 4)));
+			}
+
+			catch (NumberFormatException e) {
+				continue;
+			}
+		}
+
+		return last;
+	}
+
+	@Override
+	public String toString() {
+		return written.sum() + " jogos registrados em " + directory + ", " + dropped.sum() + " descartados";
+	}
+}
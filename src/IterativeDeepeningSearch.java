@@ -0,0 +1,94 @@
+/**
+ * Busca por aprofundamento iterativo: faz buscas alfa-beta com profundidade 1,
+ * 2, 3, ... at que o tempo reservado para a jogada acabe, e retorna a melhor
+ * jogada da ltima profundidade concluda. Assim o computador joga to bem
+ * quanto o tempo permite, sem ultrapass-lo.
+ *
+ * Cada iterao comea pela melhor jogada da anterior, e todas compartilham a
+ * mesma tabela de transposio (se houver), o que torna as buscas rasas quase
+ * gratuitas perto da ltima.
+ *
+ * Uma instncia no deve ser compartilhada entre threads.
+ */
+public class IterativeDeepeningSearch implements SearchStrategy {
+	/**
+	 * Quanto tempo, em milissegundos, cada jogada pode levar.
+	 */
+	private final long timeBudgetMillis;
+
+	/**
+	 * A maior profundidade que ser tentada.
+	 */
+	private final int maxDepth;
+
+	/**
+	 * A busca alfa-beta de todas as iteraes, com a tabela de transposio
+	 * compartilhada por elas (se houver). Cada iterao s muda a sua
+	 * profundidade, o prazo e a jogada preferida, e as listas de jogadas das
+	 * iteraes anteriores so reaproveitadas.
+	 */
+	private final AlphaBetaSearch search;
+
+	/**
+	 * A profundidade da ltima iterao concluda e os ns visitados por todas as
+	 * iteraes da ltima busca.
+	 */
+	private int completedDepth = 0;
+	private long nodeCount = 0;
+
+	/**
+	 * Estabelece uma busca que leva no mximo timeBudgetMillis milissegundos por
+	 * jogada e no passa de maxDepth jogadas  frente.
+	 */
+	public IterativeDeepeningSearch(long timeBudgetMillis, int maxDepth, TranspositionTable table) {
+		this.timeBudgetMillis = timeBudgetMillis;
+		this.maxDepth = maxDepth;
+		this.search = new AlphaBetaSearch(1, table);
+	}
+
+	public int bestMove(JogoDaVelha game) {
+		long deadline = System.nanoTime() + timeBudgetMillis * 1000000L;
+		int free = game.getCells() - game.getNumMoves();
+		int best = -1;
+
+		completedDepth = 0;
+		nodeCount = 0;
+
+		for (int depth = 1; depth <= maxDepth; depth++) {
+			search.setDepth(depth);
+			search.setPreferredMove(best);
+
+			// A primeira iterao sempre termina, para que haja uma jogada a retornar.
+			search.setDeadline((depth > 1) ? deadline : 0);
+
+			int move = search.bestMove(game);
+			nodeCount += search.getNodeCount();
+
+			if (search.isAborted()) {
+				break;
+			}
+
+			best = move;
+			completedDepth = depth;
+
+			// A busca j chegou ao fim do jogo ou ao fim do tempo: ir mais fundo no
+			// muda a jogada ou no vai terminar.
+			if (depth >= free || System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Retorna a profundidade da ltima iterao concluda na ltima busca.
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+}
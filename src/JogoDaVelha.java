@@ -1,4 +1,7 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class JogoDaVelha implements Cloneable {
 	/**
@@ -19,6 +22,54 @@ public class JogoDaVelha implements Cloneable {
 	// A dificuldade do jogo. Este valor  usado por bestGuess ().
 	private final int GAME_LEVEL = 8;
 
+	// As dimenses do jogo clssico: grade 3x3 e trs em linha para vencer.
+	private static final int DEFAULT_SIZE = 3;
+	private static final int DEFAULT_WIN_LENGTH = 3;
+
+	/**
+	 * O lado da grade (que tem size x size posies), quantas marcas seguidas vencem
+	 * o jogo e o nmero total de posies.
+	 */
+	private final int size;
+	private final int winLength;
+	private final int cells;
+
+	/**
+	 * As oito simetrias da grade (quatro rotaes e quatro reflexes).
+	 * symmetries[s][i]  a posio para onde a simetria s leva a posio i.
+	 */
+	private final int[][] symmetries;
+
+	/**
+	 * Nmeros aleatrios de Zobrist para cada lado e posio, usados para formar o
+	 * hash das posies. A semente  fixa para que o hash seja sempre o mesmo.
+	 */
+	private final long[][] zobrist;
+
+	/**
+	 * Mscara com todas as posies da grade ocupadas, usada no modo bitboard.
+	 */
+	private final int fullBoard;
+
+	/**
+	 * As linhas vencedoras da grade, ou seja, todas as sequncias de winLength
+	 * posies na horizontal, vertical ou diagonal. cellLines[i] lista as linhas
+	 * que passam pela posio i.
+	 */
+	private final int[][] cellLines;
+
+	/**
+	 * O peso de uma linha vencedora ainda aberta com n marcas de um s lado,
+	 * usado por evaluate (). Cada marca a mais vale oito vezes mais.
+	 */
+	private final int[] lineWeights;
+
+	/**
+	 * O incio de cada quadro enviado ao cliente: vazio no jogo clssico e
+	 * "NxN/K:" nos demais. Veja encodeBoard ().
+	 */
+	private final byte[] boardHeader;
+
 	/**
 	 * Um nmero inteiro (usando as constantes ..._ TURN acima) descrevendo de quem
 	 *  a vez para fazer um movimento.
@@ -34,14 +85,14 @@ public class JogoDaVelha implements Cloneable {
 	/**
 	 * Uma matriz que representa o estado do tabuleiro do jogo atual como uma grade.
 	 */
-	private char[] grid = new char[9];
+	private char[] grid;
 
 	/**
 	 * Uma matriz que representa o conjunto atual de movimentos feitos neste jogo.
 	 * movimentos [i] conter 0 se a grade i no estiver disponvel ou 1 se estiver
 	 * disponvel.
 	 */
-	private int[] moves = new int[9];
+	private int[] moves;
 
 	/**
 	 * Representa quantas jogadas foram feitas durante o decorrer do jogo.
@@ -49,15 +100,119 @@ public class JogoDaVelha implements Cloneable {
 	private int numMoves = 0;
 
 	/**
-	 * Estabelece um novo estado de jogo limpando o tabuleiro.
+	 * O tabuleiro em modo bitboard: uma mscara de bits para cada lado, onde o bit
+	 * i est ligado se a posio i da grade pertencer quele lado. S  mantido
+	 * quando a grade cabe em um int (at 32 posies); veja isBitboard ().
+	 */
+	private int playerBits = 0;
+	private int computerBits = 0;
+
+	/**
+	 * Pilha usada por undoPiece () para desfazer as jogadas feitas por
+	 * placePiece (). A entrada i guarda a posio da i-sima jogada, a marca que
+	 * ocupava essa posio e de quem era a vez antes dela.
+	 */
+	private int[] undoMoves;
+	private char[] undoMarks;
+	private int[] undoTurns;
+	private int[] undoStatus;
+
+	/**
+	 * Quantas marcas de cada lado existem em cada linha vencedora. So atualizadas
+	 * a cada jogada, e uma linha com winLength marcas de um lado decide o jogo.
+	 */
+	private int[] playerLineCounts;
+	private int[] computerLineCounts;
+
+	/**
+	 * O resultado do jogo no formato de result (), mantido por placePiece () e
+	 * undoPiece ().
+	 */
+	private int status = 0;
+
+	/**
+	 * A soma dos pesos das linhas abertas do jogador menos a das linhas abertas do
+	 * computador, mantida junto com as contagens. Veja evaluate ().
+	 */
+	private int heuristic = 0;
+
+	/**
+	 * O hash de Zobrist da grade vista por cada uma das oito simetrias. Eles so
+	 * atualizados a cada jogada, e o menor deles identifica a posio
+	 * independentemente de rotaes e reflexes.
+	 */
+	private long[] symmetricHashes = new long[8];
+
+	/**
+	 * A estratgia usada por bestMove () para escolher a jogada do computador. Se
+	 * for nula,  usado o minimax de bestGuess () com o nvel GAME_LEVEL.
+	 */
+	private SearchStrategy searchStrategy = null;
+
+	/**
+	 * Estabelece um novo estado de jogo limpando o tabuleiro clssico 3x3.
 	 */
 	public JogoDaVelha() {
-		// Preencha o quadro para que fique vazio.
-		for (int i = 0; i < 9; i++) {
-			grid[i] = NOBODY_MARK;
+		this(DEFAULT_SIZE, DEFAULT_WIN_LENGTH);
+	}
+
+	/**
+	 * Estabelece um novo estado de jogo em uma grade size x size, em que vence quem
+	 * fizer winLength marcas seguidas em uma linha, coluna ou diagonal.
+	 */
+	public JogoDaVelha(int size, int winLength) {
+		if (size < 1 || winLength < 1 || winLength > size) {
+			throw new IllegalArgumentException("Dimenses de jogo invlidas: " + size + "x" + size + "/" + winLength);
+		}
+
+		this.size = size;
+		this.winLength = winLength;
+		this.cells = size * size;
+
+		grid = new char[cells];
+		moves = new int[cells];
+		undoMoves = new int[cells];
+		undoMarks = new char[cells];
+		undoTurns = new int[cells];
+		undoStatus = new int[cells];
+
+		cellLines = buildLines(size, winLength);
+		lineWeights = new int[winLength + 1];
+		for (int n = 1; n <= winLength; n++) {
+			lineWeights[n] = 1 << Math.min(3 * (n - 1), 20);
 		}
+		playerLineCounts = new int[lineCount(size, winLength)];
+		computerLineCounts = new int[lineCount(size, winLength)];
 
+		symmetries = buildSymmetries(size);
+		zobrist = buildZobrist(cells, 0x4A6F676FL);
+		fullBoard = isBitboard() ? (int) ((1L << cells) - 1) : 0;
+		boardHeader = (isClassic() ? "" : size + "x" + size + "/" + winLength + ":")
+				.getBytes(StandardCharsets.US_ASCII);
+
+		reset();
+	}
+
+	/**
+	 * Volta ao incio de um novo jogo com as mesmas dimenses: a grade fica vazia
+	 * e ningum tem a vez. A estratgia de busca  mantida. Permite jogar vrios
+	 * jogos com o mesmo objeto, sem criar outro a cada jogo.
+	 */
+	public void reset() {
+		// Preencha o quadro para que fique vazio.
+		Arrays.fill(grid, NOBODY_MARK);
 		generateMoves();
+
+		numMoves = 0;
+		whoseTurn = NOBODY_TURN;
+		firstTurn = NOBODY_TURN;
+		playerBits = 0;
+		computerBits = 0;
+		status = 0;
+		heuristic = 0;
+		Arrays.fill(playerLineCounts, 0);
+		Arrays.fill(computerLineCounts, 0);
+		Arrays.fill(symmetricHashes, 0);
 	}
 
 	/**
@@ -68,6 +223,13 @@ public class JogoDaVelha implements Cloneable {
 		JogoDaVelha clone = (JogoDaVelha) super.clone();
 		clone.grid = this.grid.clone();
 		clone.moves = this.moves.clone();
+		clone.undoMoves = this.undoMoves.clone();
+		clone.undoMarks = this.undoMarks.clone();
+		clone.undoTurns = this.undoTurns.clone();
+		clone.undoStatus = this.undoStatus.clone();
+		clone.playerLineCounts = this.playerLineCounts.clone();
+		clone.computerLineCounts = this.computerLineCounts.clone();
+		clone.symmetricHashes = this.symmetricHashes.clone();
 
 		return clone;
 	}
@@ -80,9 +242,7 @@ public class JogoDaVelha implements Cloneable {
 		// Determine aleatoriamente se o player ou o computador ser o primeiro a
 		// funcionar durante
 		// este jogo.
-		Random generator = new Random();
-
-		if (generator.nextInt(2) == 0) {
+		if (ThreadLocalRandom.current().nextInt(2) == 0) {
 			setFirstTurn(PLAYER_TURN);
 		}
 
@@ -94,20 +254,50 @@ public class JogoDaVelha implements Cloneable {
 	/**
 	 * Retorna uma String descrevendo o estado do quadro. Essa string pode ser usada
 	 * pelo cliente para desenhar o quadro.
+	 *
+	 * No jogo clssico so apenas as nove posies. Nos demais, as posies so
+	 * precedidas pelas dimenses no formato "NxN/K:", para que o cliente saiba como
+	 * montar a grade.
 	 */
 	public String drawBoard() {
-		String toReturn = "";
+		byte[] board = new byte[getBoardLength()];
 
-		for (char space : grid) {
-			if (space == PLAYER_MARK)
-				toReturn += "1";
-			else if (space == COMPUTER_MARK)
-				toReturn += "2";
+		encodeBoard(board, 0);
+
+		return new String(board, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Escreve o quadro de drawBoard () em buffer a partir de offset, sem criar
+	 * nenhum objeto, e retorna quantos bytes foram escritos (sempre
+	 * getBoardLength ()).
+	 */
+	public int encodeBoard(byte[] buffer, int offset) {
+		int position = offset;
+
+		System.arraycopy(boardHeader, 0, buffer, position, boardHeader.length);
+		position += boardHeader.length;
+
+		for (int i = 0; i < cells; i++) {
+			if (grid[i] == PLAYER_MARK)
+				buffer[position++] = '1';
+			else if (grid[i] == COMPUTER_MARK)
+				buffer[position++] = '2';
 			else
-				toReturn += "-";
+				buffer[position++] = '-';
 		}
 
-		return toReturn + "\n";
+		buffer[position++] = '\n';
+
+		return position - offset;
+	}
+
+	/**
+	 * Retorna o tamanho em bytes do quadro de drawBoard (), incluindo a quebra de
+	 * linha.
+	 */
+	public int getBoardLength() {
+		return boardHeader.length + cells + 1;
 	}
 
 	/**
@@ -130,26 +320,45 @@ public class JogoDaVelha implements Cloneable {
 	 * restantes para esse estado do jogo.
 	 */
 	public int[] generateLegalMoves() {
-		// Crie a lista de movimentos legais do conjunto de movimentos.
-		int[] legalMoves = new int[0];
+		// Conte os movimentos legais e crie a matriz j com o tamanho certo.
+		int count = 0;
 
-		for (int i = 0; i < moves.length; i++) {
-			// Se a movimentao estiver disponvel, adicione-a  matriz de movimentaes
-			// legais.
-			if (moves[i] == 1) {
-				// Aumente o tamanho da matriz de movimentos legais.
-				int[] tempLegalMoves = legalMoves;
-				legalMoves = new int[tempLegalMoves.length + 1];
-
-				for (int j = 0; j < tempLegalMoves.length; j++) {
-					legalMoves[j] = tempLegalMoves[j];
-				}
+		for (int i = 0; i < cells; i++) {
+			count += moves[i];
+		}
+
+		int[] legalMoves = new int[count];
+
+		legalMoves(legalMoves);
+
+		return legalMoves;
+	}
+
+	/**
+	 * Escreve os movimentos legais em ordem crescente no incio de buffer, que deve
+	 * ter pelo menos getCells () posies, e retorna quantos so. Ao contrrio de
+	 * generateLegalMoves (), no cria nenhum objeto, ento o mesmo buffer pode ser
+	 * reaproveitado em cada n de uma busca.
+	 */
+	public int legalMoves(int[] buffer) {
+		int count = 0;
 
-				legalMoves[legalMoves.length - 1] = i;
+		// No modo bitboard, percorra apenas os bits livres, do menor para o maior.
+		if (isBitboard()) {
+			for (int free = getFreeBits(); free != 0; free &= free - 1) {
+				buffer[count++] = Integer.numberOfTrailingZeros(free);
 			}
 		}
 
-		return legalMoves;
+		else {
+			for (int i = 0; i < cells; i++) {
+				if (moves[i] == 1) {
+					buffer[count++] = i;
+				}
+			}
+		}
+
+		return count;
 	}
 
 	/**
@@ -157,7 +366,7 @@ public class JogoDaVelha implements Cloneable {
 	 */
 	public boolean legalMove(int move) {
 		// Retorne false se o movimento estiver fora dos limites do jogo.
-		if (move < 0 || move > 8) {
+		if (move < 0 || move >= cells) {
 			return false;
 		}
 
@@ -169,7 +378,7 @@ public class JogoDaVelha implements Cloneable {
 	 * O mtodo pelo qual o computador gera sua movimentao. Este mtodo ir tambm
 	 * faa a mudana para o computador.
 	 */
-	public void computerMove() throws CloneNotSupportedException {
+	public void computerMove() {
 		int computerMove = bestMove();
 
 		placePiece(COMPUTER_TURN, computerMove);
@@ -180,80 +389,54 @@ public class JogoDaVelha implements Cloneable {
 	 * no estado atual da placa. Retorna a melhor jogada possvel como um nmero
 	 * inteiro.
 	 * 
+	 * A busca  feita neste mesmo objeto: cada jogada tentada  colocada com
+	 * placePiece () e retirada com undoPiece (), ento nenhum objeto  clonado por
+	 * n. Se houver uma estratgia de busca definida, a escolha  delegada a ela.
+	 * 
 	 * @return int
-	 * @throws CloneNotSupportedException se os objetos JogoDaVelha no forem clonados
-	 *                                    com sucesso.
 	 */
-	public int bestMove() throws CloneNotSupportedException {
+	public int bestMove() {
+		if (searchStrategy != null) {
+			return searchStrategy.bestMove(this);
+		}
+
 		/**
 		 * Acompanha o valor da estimativa da melhor jogada e o valor da estimativa
 		 * movimento atual sendo examinado.
 		 */
-		int bestGuessValue, currentGuessValue;
+		int bestGuessValue = 0, currentGuessValue;
 
 		/**
 		 * Armazena a melhor jogada encontrada at agora e a prxima jogada a tentar.
 		 */
-		int best, tryMove;
+		int best = -1, tryMove;
 
-		/**
-		 * Possui uma cpia do jogo atual.
-		 */
-		JogoDaVelha tempSituation;
+		// O n raiz mantm a vez de quem pediu a jogada.
+		int turn = getWhoseTurn();
 
-		/**
-		 * Armazena o conjunto de movimentos legais para esse estado da placa.
-		 */
-		int[] legalMoves;
-
-		// Copie a placa atual e gere uma lista de movimentos legais no computador
-		// tentar fazer.
-		tempSituation = this.clone();
-		legalMoves = tempSituation.generateLegalMoves();
-
-		// Comece a determinar a melhor jogada na primeira jogada legal do conjunto.
-		// Coloque o
-		// pea e determine um
-		// estimativa da probabilidade de o computador vencer o jogo fazendo-o.
-		tryMove = legalMoves[0];
-
-		tempSituation.placePiece(COMPUTER_TURN, tryMove);
-		bestGuessValue = tempSituation.bestGuess(GAME_LEVEL);
-
-		// Acompanhe a melhor jogada que o computador pode fazer. Por enquanto, tem que
-		// ser o primeiro
-		// movimento legal.
-		best = tryMove;
-
-		// Tente todos os movimentos legais possveis para determinar qual  o melhor
-		// gosta mais com base no
-		// estado atual da placa.
-		int currentMoveIndex = 1;
-		while (currentMoveIndex < legalMoves.length) {
-			// Apague a pea colocada anteriormente e tente os demais movimentos legais para
-			// determina qual d o melhor
-			// resultado.
-			tempSituation = this.clone();
-			tryMove = legalMoves[currentMoveIndex];
-
-			tempSituation.placePiece(COMPUTER_TURN, tryMove);
+		// Escolha a jogada que oferece ao computador a maior chance de ganhar se for
+		// a vez dele. Caso contrrio, "bloqueie" a jogada que permitiria ao jogador
+		// vencer (o mais prximo de 0).
+		boolean computerTurn = turn == COMPUTER_TURN;
+
+		// Tente todos os movimentos legais possveis, na ordem da grade, para
+		// determinar qual  o melhor com base no estado atual da placa.
+		for (tryMove = 0; tryMove < cells; tryMove++) {
+			if (moves[tryMove] == 0) {
+				continue;
+			}
 
 			// Determine a chance do computador vencer fazendo essa jogada.
-			currentGuessValue = tempSituation.bestGuess(GAME_LEVEL);
-
-			// Escolha a jogada que oferece ao computador a maior chance de ganhar.
-			// Faa isso movendo-se com o maior valor de palpite (o mais prximo de ganhar
-			// 100) se o computador ligar.
-			// Caso contrrio, "bloqueie" a jogada que permitiria ao jogador vencer (o mais
-			// prximo
-			// 0).
-			if ((tempSituation.getWhoseTurn() == COMPUTER_TURN && currentGuessValue > bestGuessValue)
-					|| tempSituation.getWhoseTurn() != COMPUTER_TURN && currentGuessValue < bestGuessValue) {
+			placePiece(COMPUTER_TURN, tryMove);
+			setWhoseTurn(turn);
+			currentGuessValue = bestGuess(GAME_LEVEL);
+			undoPiece();
+
+			if (best == -1 || (computerTurn && currentGuessValue > bestGuessValue)
+					|| (!computerTurn && currentGuessValue < bestGuessValue)) {
 				bestGuessValue = currentGuessValue;
 				best = tryMove;
 			}
-
-			currentMoveIndex++;
 		}
 
 		return best;
@@ -270,66 +453,52 @@ public class JogoDaVelha implements Cloneable {
 	 * O nvel descreve quanto mais o jogo ser jogado para determinar a melhor
 	 * jogada possvel. Os valores do nvel variam de 0 a 8, sendo 8 tecnicamente
 	 * imbatveis.
+	 *
+	 * A primeira jogada de cada n  feita pelo lado indicado pela paridade do
+	 * nvel; as demais so feitas por quem tem a vez no prprio n. Ao retornar, o
+	 * jogo est exatamente no mesmo estado em que estava na chamada.
 	 */
-	public int bestGuess(int level) throws CloneNotSupportedException {
+	public int bestGuess(int level) {
 		/**
 		 * Acompanha o valor da estimativa da melhor jogada e o valor da estimativa
 		 * atual que est sendo examinada.
 		 */
-		int bestGuessValue, currentGuessValue;
-
-		/**
-		 * Armazena a prxima jogada para tentar.
-		 */
-		int tryMove;
-
-		/**
-		 * Possui uma cpia do jogo atual.
-		 */
-		JogoDaVelha tempSituation;
+		int bestGuessValue = -1, currentGuessValue;
 
 		/**
-		 * Possui uma cpia dos movimentos legais para este jogo.
+		 * Armazena a prxima jogada para tentar e quem a far.
 		 */
-		int[] legalMoves = this.generateLegalMoves();
+		int tryMove, mover;
 
 		// Se estivermos no nvel bsico ou o jogo terminar, retorne o desempenho do
 		// computador.
-		if ((level == 0 || this.isOver())) {
+		if (level == 0 || isOver()) {
 			return judge();
 		}
 
-		// Copie o jogo atual.
-		tempSituation = this.clone();
+		// Se o nvel estiver nivelado, o computador estar tentando uma mudana. Se o
+		// nvel for mpar, o jogador estar tentando uma jogada.
+		int turn = getWhoseTurn();
+		mover = (level % 2 == 0) ? COMPUTER_TURN : PLAYER_TURN;
 
-		// Se o nvel estiver nivelado, o computador estar tentando uma mudana.
-		if (level % 2 == 0) {
-			tempSituation.setWhoseTurn(COMPUTER_TURN);
-		}
-
-		// Se o nvel for mpar, o jogador estar tentando uma jogada.
-		else {
-			tempSituation.setWhoseTurn(PLAYER_TURN);
-		}
-
-		// Coloque a primeira jogada legal e determine o quo boa  para o computador.
-		tryMove = legalMoves[0];
-		tempSituation.placePiece(tempSituation.getWhoseTurn(), tryMove);
-		bestGuessValue = tempSituation.bestGuess(level - 1);
+		// Execute os movimentos legais.
+		for (tryMove = 0; tryMove < cells; tryMove++) {
+			if (moves[tryMove] == 0) {
+				continue;
+			}
 
-		// Execute os movimentos legais restantes.
-		int currentMoveIndex = 1;
-		while (currentMoveIndex < legalMoves.length) {
-			// Apague a jogada anterior e tente a prxima disponvel.
-			tempSituation = this.clone();
-			tryMove = legalMoves[currentMoveIndex];
-			tempSituation.placePiece(tempSituation.getWhoseTurn(), tryMove);
+			placePiece(mover, tryMove);
+			currentGuessValue = bestGuess(level - 1);
+			undoPiece();
 
-			currentGuessValue = tempSituation.bestGuess(level - 1);
+			// A primeira jogada legal  a melhor encontrada at agora.
+			if (bestGuessValue == -1) {
+				bestGuessValue = currentGuessValue;
+			}
 
 			// Se for a vez do jogador, queremos considerar essa ao para impedi-lo de
 			// vencer.
-			if (tempSituation.getWhoseTurn() == PLAYER_TURN) {
+			else if (mover == PLAYER_TURN) {
 				bestGuessValue = Math.max(bestGuessValue, currentGuessValue);
 			}
 
@@ -338,7 +507,8 @@ public class JogoDaVelha implements Cloneable {
 				bestGuessValue = Math.min(bestGuessValue, currentGuessValue);
 			}
 
-			currentMoveIndex++;
+			// Apague a jogada anterior e tente a prxima disponvel com a vez do n.
+			mover = turn;
 		}
 
 		return bestGuessValue;
@@ -346,75 +516,332 @@ public class JogoDaVelha implements Cloneable {
 
 	/**
 	 * Atualiza o jogo para que o jogador ({player} _TURN) faa um movimento no
-	 * especificado ponto na grade.
+	 * especificado ponto na grade. A vez passa a ser de quem fez o movimento, e a
+	 * jogada pode ser desfeita com undoPiece ().
 	 */
 	public void placePiece(int player, int move) {
+		// Guarde o que for preciso para desfazer esta jogada.
+		undoMoves[numMoves] = move;
+		undoMarks[numMoves] = grid[move];
+		undoTurns[numMoves] = whoseTurn;
+		undoStatus[numMoves] = status;
+
+		toggleHash(grid[move], move);
+		countLines(grid[move], move, -1);
 		grid[move] = (player == PLAYER_TURN) ? PLAYER_MARK : COMPUTER_MARK;
+		toggleHash(grid[move], move);
+		countLines(grid[move], move, 1);
+
+		// Mantenha o bitboard em sincronia com a grade.
+		if (isBitboard()) {
+			if (player == PLAYER_TURN) {
+				playerBits |= 1 << move;
+				computerBits &= ~(1 << move);
+			}
+
+			else {
+				computerBits |= 1 << move;
+				playerBits &= ~(1 << move);
+			}
+		}
 
 		numMoves++;
+		whoseTurn = player;
 
-		// Gere o novo conjunto de jogadas executadas/no executadas no jogo.
-		generateMoves();
+		// Se ningum venceu e a grade est cheia, o jogo est empatado.
+		if (status == 0 && numMoves == cells) {
+			status = 3;
+		}
+
+		// A posio deixa de estar disponvel.
+		moves[move] = 0;
 	}
 
 	/**
-	 * Retorna um valor inteiro com base no exame do estado do jogo: 0 - o jogo est
-	 * em andamento 1 - o jogador ganhou 2 - o computaor ganhou 3 - o jogo est
-	 * empatado
+	 * Desfaz a ltima jogada feita por placePiece (), restaurando a grade, os
+	 * movimentos disponveis, o nmero de jogadas e de quem era a vez.
 	 */
-	public int result() {
-		// Primeiro verifique as colunas para ver se existem vencedores.
-		for (int i = 0; i < 3; i++) {
-			// O computador ganhou?
-			if (grid[i] == PLAYER_MARK && grid[i + 3] == PLAYER_MARK && grid[i + 6] == PLAYER_MARK) {
-				return 1;
-			}
+	public void undoPiece() {
+		numMoves--;
+
+		int move = undoMoves[numMoves];
+		char mark = undoMarks[numMoves];
+
+		toggleHash(grid[move], move);
+		countLines(grid[move], move, -1);
+		grid[move] = mark;
+		toggleHash(mark, move);
+		countLines(mark, move, 1);
+		status = undoStatus[numMoves];
+		moves[move] = (mark == NOBODY_MARK) ? 1 : 0;
+		whoseTurn = undoTurns[numMoves];
+
+		// Restaure tambm o bitboard a partir da marca anterior.
+		if (!isBitboard()) {
+			return;
+		}
 
-			// O computador ganhou?
-			else if (grid[i] == COMPUTER_MARK && grid[i + 3] == COMPUTER_MARK && grid[i + 6] == COMPUTER_MARK) {
-				return 2;
-			}
+		playerBits &= ~(1 << move);
+		computerBits &= ~(1 << move);
+
+		if (mark == PLAYER_MARK) {
+			playerBits |= 1 << move;
+		}
+
+		else if (mark == COMPUTER_MARK) {
+			computerBits |= 1 << move;
 		}
+	}
 
-		// Em seguida, verifique as linhas para quaisquer vencedores.
-		for (int i = 0; i <= 6; i += 3) {
-			// O computador ganhou?
-			if (grid[i] == PLAYER_MARK && grid[i + 1] == PLAYER_MARK && grid[i + 2] == PLAYER_MARK) {
-				return 1;
+	/**
+	 * Retorna true se colocar uma pea do jogador ({player} _TURN) na posio move
+	 * completar winLength marcas seguidas em uma linha, coluna ou diagonal para ele.
+	 */
+	public boolean isWinningMove(int player, int move) {
+		int[] counts = (player == PLAYER_TURN) ? playerLineCounts : computerLineCounts;
+
+		// Com a posio livre, uma linha com winLength - 1 marcas do jogador s pode
+		// estar completa a menos dela.
+		for (int line : cellLines[move]) {
+			if (counts[line] == winLength - 1) {
+				return true;
 			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Soma delta  contagem de mark em todas as linhas que passam pela posio
+	 * move, e registra a vitria se alguma linha ficar completa.
+	 */
+	private void countLines(char mark, int move, int delta) {
+		if (mark == NOBODY_MARK) {
+			return;
+		}
+
+		int[] counts = (mark == PLAYER_MARK) ? playerLineCounts : computerLineCounts;
+
+		for (int line : cellLines[move]) {
+			heuristic -= lineValue(line);
+			counts[line] += delta;
+			heuristic += lineValue(line);
 
-			// O computador ganhou?
-			if (grid[i] == COMPUTER_MARK && grid[i + 1] == COMPUTER_MARK && grid[i + 2] == COMPUTER_MARK) {
-				return 2;
+			if (counts[line] == winLength && status == 0) {
+				status = (mark == PLAYER_MARK) ? 1 : 2;
 			}
 		}
+	}
 
-		// Por fim, verifique as diagonais.
-		if (grid[0] == PLAYER_MARK && grid[4] == PLAYER_MARK && grid[8] == PLAYER_MARK) {
-			return 1;
+	/**
+	 * Retorna quanto uma linha vencedora contribui para evaluate (): nada se os
+	 * dois lados (ou nenhum) tiverem marcas nela, e o peso das marcas caso
+	 * contrrio, positivo para o jogador e negativo para o computador.
+	 */
+	private int lineValue(int line) {
+		int player = playerLineCounts[line];
+		int computer = computerLineCounts[line];
+
+		if (computer == 0) {
+			return lineWeights[player];
 		}
 
-		else if (grid[2] == PLAYER_MARK && grid[4] == PLAYER_MARK && grid[6] == PLAYER_MARK) {
-			return 1;
+		if (player == 0) {
+			return -lineWeights[computer];
 		}
 
-		if (grid[0] == COMPUTER_MARK && grid[4] == COMPUTER_MARK && grid[8] == COMPUTER_MARK) {
-			return 2;
+		return 0;
+	}
+
+	/**
+	 * Retorna uma estimativa de quo boa  a posio para o jogador ({player}
+	 * _TURN), usada pela busca quando no  possvel ir at o fim do jogo. Cada
+	 * linha vencedora que s tem marcas de um lado conta a favor desse lado, com
+	 * mais peso quanto mais marcas ela tiver.
+	 */
+	public int evaluate(int player) {
+		return (player == PLAYER_TURN) ? heuristic : -heuristic;
+	}
+
+	/**
+	 * Liga ou desliga a marca de uma posio nos hashes de todas as simetrias.
+	 */
+	private void toggleHash(char mark, int move) {
+		if (mark == NOBODY_MARK) {
+			return;
 		}
 
-		else if (grid[2] == COMPUTER_MARK && grid[4] == COMPUTER_MARK && grid[6] == COMPUTER_MARK) {
-			return 2;
+		long[] keys = zobrist[(mark == PLAYER_MARK) ? 0 : 1];
+
+		for (int s = 0; s < symmetricHashes.length; s++) {
+			symmetricHashes[s] ^= keys[symmetries[s][move]];
 		}
+	}
+
+	/**
+	 * Retorna um hash da posio atual que  o mesmo para todas as suas rotaes e
+	 * reflexes. No inclui de quem  a vez.
+	 */
+	public long canonicalHash() {
+		long hash = symmetricHashes[0];
 
-		// Se houver 9 jogadas nesse momento, o jogo ser empatado.
-		if (numMoves == 9) {
-			return 3;
+		for (int s = 1; s < symmetricHashes.length; s++) {
+			hash = Math.min(hash, symmetricHashes[s]);
 		}
 
-		// Caso contrrio, o jogo continua!
-		else {
-			return 0;
+		return hash;
+	}
+
+	/**
+	 * Retorna o ndice da simetria cujo hash  canonicalHash (). Vista por essa
+	 * simetria, a posio  a mesma para todas as suas rotaes e reflexes, o que
+	 * permite guardar jogadas independentemente delas: veja toSymmetry () e
+	 * fromSymmetry ().
+	 */
+	public int canonicalSymmetry() {
+		int best = 0;
+
+		for (int s = 1; s < symmetricHashes.length; s++) {
+			if (symmetricHashes[s] < symmetricHashes[best]) {
+				best = s;
+			}
 		}
+
+		return best;
+	}
+
+	/**
+	 * Retorna a posio para onde a simetria s leva a posio move.
+	 */
+	public int toSymmetry(int s, int move) {
+		return symmetries[s][move];
+	}
+
+	/**
+	 * Retorna a posio que a simetria s leva at cell, ou seja, desfaz
+	 * toSymmetry ().
+	 */
+	public int fromSymmetry(int s, int cell) {
+		int[] symmetry = symmetries[s];
+
+		for (int move = 0; move < cells; move++) {
+			if (symmetry[move] == cell) {
+				return move;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Monta a tabela de simetrias de uma grade size x size.
+	 */
+	private static int[][] buildSymmetries(int size) {
+		int[][] symmetries = new int[8][size * size];
+		int last = size - 1;
+
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				int i = row * size + col;
+
+				symmetries[0][i] = row * size + col;
+				symmetries[1][i] = col * size + (last - row);
+				symmetries[2][i] = (last - row) * size + (last - col);
+				symmetries[3][i] = (last - col) * size + row;
+				symmetries[4][i] = row * size + (last - col);
+				symmetries[5][i] = (last - row) * size + col;
+				symmetries[6][i] = col * size + row;
+				symmetries[7][i] = (last - col) * size + (last - row);
+			}
+		}
+
+		return symmetries;
+	}
+
+	/**
+	 * Retorna quantas linhas vencedoras existem em uma grade size x size.
+	 */
+	private static int lineCount(int size, int winLength) {
+		int starts = size - winLength + 1;
+
+		// Horizontais e verticais, e depois as duas diagonais.
+		return 2 * size * starts + 2 * starts * starts;
+	}
+
+	/**
+	 * Monta, para cada posio de uma grade size x size, a lista das linhas
+	 * vencedoras que passam por ela.
+	 */
+	private static int[][] buildLines(int size, int winLength) {
+		int[][] directions = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+		int[] perCell = new int[size * size];
+		int[][] cellLines = new int[size * size][];
+
+		// Na primeira passada, conte as linhas de cada posio; na segunda, preencha.
+		for (int pass = 0; pass < 2; pass++) {
+			int line = 0;
+
+			for (int[] direction : directions) {
+				for (int row = 0; row < size; row++) {
+					for (int col = 0; col < size; col++) {
+						int lastRow = row + (winLength - 1) * direction[0];
+						int lastCol = col + (winLength - 1) * direction[1];
+
+						if (lastRow >= size || lastCol < 0 || lastCol >= size) {
+							continue;
+						}
+
+						for (int i = 0; i < winLength; i++) {
+							int cell = (row + i * direction[0]) * size + col + i * direction[1];
+
+							if (pass == 0) {
+								perCell[cell]++;
+							}
+
+							else {
+								cellLines[cell][--perCell[cell]] = line;
+							}
+						}
+
+						line++;
+					}
+				}
+			}
+
+			if (pass == 0) {
+				for (int cell = 0; cell < cellLines.length; cell++) {
+					cellLines[cell] = new int[perCell[cell]];
+				}
+			}
+		}
+
+		return cellLines;
+	}
+
+	/**
+	 * Gera os nmeros de Zobrist para os dois lados em cells posies.
+	 */
+	private static long[][] buildZobrist(int cells, long seed) {
+		Random generator = new Random(seed);
+		long[][] keys = new long[2][cells];
+
+		for (int side = 0; side < 2; side++) {
+			for (int i = 0; i < cells; i++) {
+				keys[side][i] = generator.nextLong();
+			}
+		}
+
+		return keys;
+	}
+
+	/**
+	 * Retorna um valor inteiro com base no exame do estado do jogo: 0 - o jogo est
+	 * em andamento 1 - o jogador ganhou 2 - o computaor ganhou 3 - o jogo est
+	 * empatado
+	 */
+	public int result() {
+		// O resultado  mantido a cada jogada pelas contagens das linhas.
+		return status;
 	}
 
 	/**
@@ -423,7 +850,14 @@ public class JogoDaVelha implements Cloneable {
 	 * 0: o jogador ganhou
 	 */
 	public int judge() {
-		switch (result()) {
+		return judge(status);
+	}
+
+	/**
+	 * Converte um cdigo de result() no valor usado por judge().
+	 */
+	private int judge(int result) {
+		switch (result) {
 		case 0:
 			return 50;
 		case 1:
@@ -442,7 +876,7 @@ public class JogoDaVelha implements Cloneable {
 	 * Retorna true se o jogo acabou ou false se no estiver.
 	 */
 	public boolean isOver() {
-		return (result() != 0);
+		return (status != 0);
 	}
 
 	/**
@@ -473,6 +907,100 @@ public class JogoDaVelha implements Cloneable {
 		this.firstTurn = firstTurn;
 	}
 
+	/**
+	 * Retorna quantas jogadas foram feitas at agora.
+	 */
+	public int getNumMoves() {
+		return numMoves;
+	}
+
+	/**
+	 * Retorna a posio da i-sima jogada feita (a partir de 0).
+	 */
+	public int getMove(int i) {
+		return undoMoves[i];
+	}
+
+	/**
+	 * Retorna a posio da ltima jogada feita, ou -1 se a grade estiver vazia.
+	 */
+	public int getLastMove() {
+		return (numMoves == 0) ? -1 : undoMoves[numMoves - 1];
+	}
+
+	/**
+	 * Retorna a estratgia de busca usada por bestMove (), ou null se for o minimax
+	 * original.
+	 */
+	public SearchStrategy getSearchStrategy() {
+		return searchStrategy;
+	}
+
+	/**
+	 * Define a estratgia de busca usada por bestMove (). Use null para voltar ao
+	 * minimax original.
+	 */
+	public void setSearchStrategy(SearchStrategy searchStrategy) {
+		this.searchStrategy = searchStrategy;
+	}
+
+	/**
+	 * Retorna o lado da grade.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Retorna quantas marcas seguidas vencem o jogo.
+	 */
+	public int getWinLength() {
+		return winLength;
+	}
+
+	/**
+	 * Retorna o nmero de posies da grade.
+	 */
+	public int getCells() {
+		return cells;
+	}
+
+	/**
+	 * Retorna true se a grade couber em um int e as mscaras de getPlayerBits (),
+	 * getComputerBits () e getFreeBits () forem mantidas.
+	 */
+	public boolean isBitboard() {
+		return cells <= Integer.SIZE;
+	}
+
+	/**
+	 * Retorna true se este for o jogo clssico, com grade 3x3 e trs em linha.
+	 */
+	public boolean isClassic() {
+		return size == DEFAULT_SIZE && winLength == DEFAULT_WIN_LENGTH;
+	}
+
+	/**
+	 * Retorna a mscara de bits das posies ocupadas pelo jogador.
+	 */
+	public int getPlayerBits() {
+		return playerBits;
+	}
+
+	/**
+	 * Retorna a mscara de bits das posies ocupadas pelo computador.
+	 */
+	public int getComputerBits() {
+		return computerBits;
+	}
+
+	/**
+	 * Retorna a mscara de bits das posies livres, ou seja, dos movimentos legais.
+	 */
+	public int getFreeBits() {
+		return ~(playerBits | computerBits) & fullBoard;
+	}
+
 	/**
 	 * Retorna uma matriz de movimentos validos.
 	 */
@@ -495,4 +1023,11 @@ public class JogoDaVelha implements Cloneable {
 	public int getCOMPUTER_TURN() {
 		return COMPUTER_TURN;
 	}
+
+	/**
+	 * Retorna o nvel de dificuldade usado pelo minimax de bestGuess ().
+	 */
+	public int getGAME_LEVEL() {
+		return GAME_LEVEL;
+	}
 }
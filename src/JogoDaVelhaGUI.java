@@ -9,6 +9,9 @@ public class JogoDaVelhaGUI {
 	private final String SERVER_IP = "127.0.0.1";
 	private final int SERVER_PORT = 9999;
 
+	// Se a GUI deve pedir ao servidor o protocolo binrio (veja BinaryProtocol).
+	private final boolean USE_BINARY_PROTOCOL = true;
+
 	private final String FREE_ICON = "resources/marvelVSdc.png";
 	private final String PLAYER_ICON = "resources/ironMan.png";
 	private final String COMPUTER_ICON = "resources/flash.png";
@@ -19,10 +22,24 @@ public class JogoDaVelhaGUI {
 	private Container content;
 	private JPanel buttonPanel, optionsPanel;
 	private JButton[] buttons;
+	private int boardSize = 0;
 
 	private Socket socket;
+	private OutputStream rawOut;
 	private PrintWriter out;
-	private BufferedReader in;
+	private DataInputStream in;
+
+	// O estado da negociao do protocolo binrio: se a resposta do servidor ao
+	// pedido ainda no foi lida, se ele o aceitou e as dimenses da grade enviadas
+	// com a resposta ("NxN/K:", vazio no jogo clssico).
+	private boolean negotiating = false;
+	private boolean binary = false;
+	private String binaryHeader = "";
+	private int binaryCells = 9;
+
+	// O token da sesso, enviado pelo servidor quando ele guarda as sesses em um
+	// dirio (veja ServerGame.TOKEN), ou null.
+	private String sessionToken = null;
 
 	// Manipula um clique em um boto de grade habilitado.
 	private ActionListener gridClickListener = new ActionListener() {
@@ -30,7 +47,7 @@ public class JogoDaVelhaGUI {
 		public void actionPerformed(ActionEvent actionEvent) {
 			String buttonNumber = actionEvent.getActionCommand();
 			System.out.println("Enviando para o servidor: " + buttonNumber);
-			out.println(buttonNumber + "\n");
+			send(Integer.parseInt(buttonNumber), buttonNumber);
 
 			// Processe todos os comandos enviados pelo servidor (que deve ser uma cadeia de
 			// caracteres gridStatus).
@@ -47,7 +64,7 @@ public class JogoDaVelhaGUI {
 			// string para o servidor e feche a GUI.
 			if (buttonCommand.equals("close")) {
 				try {
-					out.println("#CG\n");
+					send(BinaryProtocol.CLOSE_GAME, "#CG");
 					out.close();
 					in.close();
 					socket.close();
@@ -64,7 +81,7 @@ public class JogoDaVelhaGUI {
 			// Envie a nova sequncia de jogos para o servidor e atualize a grade de botes.
 			else {
 				showGrid();
-				out.println("#NG\n");
+				send(BinaryProtocol.NEW_GAME, "#NG");
 				processServerCommands();
 			}
 		}
@@ -94,8 +111,16 @@ public class JogoDaVelhaGUI {
 	private void connectServer() {
 		try {
 			socket = new Socket(SERVER_IP, SERVER_PORT);
-			out = new PrintWriter(socket.getOutputStream(), true);
-			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			rawOut = socket.getOutputStream();
+			out = new PrintWriter(rawOut, true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+			// O pedido do protocolo binrio tem que ser o primeiro byte da conexo.
+			if (USE_BINARY_PROTOCOL) {
+				rawOut.write(BinaryProtocol.HELLO);
+				rawOut.flush();
+				negotiating = true;
+			}
 		}
 
 		catch (UnknownHostException e) {
@@ -125,8 +150,20 @@ public class JogoDaVelhaGUI {
 		try {
 			System.out.println("Processando o comando do servidor...");
 
+			if (negotiating) {
+				negotiate();
+			}
+
+			// No protocolo binrio, o quadro  convertido para o comando de texto
+			// equivalente.
 			String serverCommand;
-			serverCommand = in.readLine();
+			serverCommand = binary ? readFrame() : readLine();
+
+			while (serverCommand.startsWith(ServerGame.TOKEN)) {
+				sessionToken = serverCommand.substring(ServerGame.TOKEN.length());
+				System.out.println("Token da sesso: " + sessionToken);
+				serverCommand = readLine();
+			}
 			System.err.println("Mensagem do servidor: " + serverCommand);
 
 			// Processe qualquer sequncia gridStatus.
@@ -172,6 +209,112 @@ public class JogoDaVelhaGUI {
 		}
 	}
 
+	/**
+	 * L a resposta do servidor ao pedido do protocolo binrio: "#B" se ele o
+	 * aceitou ou "#L" se a conexo continua no protocolo de texto. Os quadros de
+	 * texto que chegarem antes dela so descartados, pois o servidor reenvia o
+	 * estado atual logo depois da resposta.
+	 */
+	private void negotiate() throws IOException {
+		String reply = readLine();
+
+		while (!reply.startsWith(BinaryProtocol.ACCEPTED) && !reply.equals(BinaryProtocol.DECLINED)) {
+			if (reply.startsWith(ServerGame.TOKEN)) {
+				sessionToken = reply.substring(ServerGame.TOKEN.length());
+			}
+
+			reply = readLine();
+		}
+
+		if (reply.startsWith(BinaryProtocol.ACCEPTED)) {
+			binary = true;
+			binaryHeader = reply.substring(BinaryProtocol.ACCEPTED.length());
+
+			if (!binaryHeader.isEmpty()) {
+				int size = Integer.parseInt(binaryHeader.substring(0, binaryHeader.indexOf('x')));
+				binaryCells = size * size;
+			}
+		}
+
+		negotiating = false;
+		System.out.println("Protocolo " + (binary ? "binrio" : "de texto") + " em uso.");
+	}
+
+	/**
+	 * L uma linha enviada pelo servidor no protocolo de texto, sem a quebra de
+	 * linha.
+	 */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c = in.read();
+
+		while (c != '\n') {
+			if (c < 0) {
+				throw new EOFException();
+			}
+
+			line.append((char) c);
+			c = in.read();
+		}
+
+		return line.toString();
+	}
+
+	/**
+	 * L um quadro do protocolo binrio e retorna o comando de texto equivalente:
+	 * o gridStatus se for a vez do usurio, ou "#P", "#C" ou "#T" se o jogo
+	 * terminou.
+	 */
+	private String readFrame() throws IOException {
+		int playerBits = in.readUnsignedShort();
+		int computerBits = in.readUnsignedShort();
+		int status = in.readUnsignedByte();
+
+		switch (status) {
+		case 1:
+			return "#P";
+		case 2:
+			return "#C";
+		case 3:
+			return "#T";
+		default:
+			break;
+		}
+
+		StringBuilder gridState = new StringBuilder(binaryHeader);
+
+		for (int i = 0; i < binaryCells; i++) {
+			if ((playerBits & (1 << i)) != 0)
+				gridState.append('1');
+			else if ((computerBits & (1 << i)) != 0)
+				gridState.append('2');
+			else
+				gridState.append('-');
+		}
+
+		return gridState.toString();
+	}
+
+	/**
+	 * Envia um comando ao servidor: o byte command no protocolo binrio ou a linha
+	 * text no protocolo de texto.
+	 */
+	private void send(int command, String text) {
+		if (!binary) {
+			out.println(text + "\n");
+			return;
+		}
+
+		try {
+			rawOut.write(command);
+			rawOut.flush();
+		}
+
+		catch (IOException e) {
+			System.err.println("Erro ao enviar comandos ao servidor.");
+		}
+	}
+
 	/**
 	 * Mostra ao usurio a GUI do jogo.
 	 * 
@@ -211,10 +354,25 @@ public class JogoDaVelhaGUI {
 	 *
 	 * @param gridState gridState is a string with length 9 (representing grid[0] to
 	 *                  grid[8]) with each character representing each box of the
-	 *                  grid. player: "1" computer: "2" free space: "-"
+	 *                  grid. player: "1" computer: "2" free space: "-". Boards
+	 *                  other than 3x3 are prefixed by their dimensions as
+	 *                  "NxN/K:".
 	 */
 	private void updateGrid(String gridState) {
-		for (int i = 0; i < 9; i++) {
+		int size = 3;
+
+		// Leia as dimenses da grade, se o servidor as tiver enviado.
+		int header = gridState.indexOf(':');
+		if (header >= 0) {
+			size = Integer.parseInt(gridState.substring(0, gridState.indexOf('x')));
+			gridState = gridState.substring(header + 1);
+		}
+
+		if (size != boardSize) {
+			buildButtons(size);
+		}
+
+		for (int i = 0; i < buttons.length; i++) {
 			JButton button = buttons[i];
 			char state = gridState.charAt(i);
 
@@ -237,6 +395,27 @@ public class JogoDaVelhaGUI {
 		}
 	}
 
+	/**
+	 * Recria os botes da grade para um tabuleiro size x size.
+	 */
+	private void buildButtons(int size) {
+		buttonPanel.removeAll();
+		buttonPanel.setLayout(new GridLayout(size, size));
+
+		buttons = new JButton[size * size];
+		for (int i = 0; i < buttons.length; i++) {
+			JButton button = new JButton(new ImageIcon(getClass().getResource(FREE_ICON)));
+			button.setActionCommand(i + "");
+			button.addActionListener(gridClickListener);
+
+			buttons[i] = button;
+			buttonPanel.add(button);
+		}
+
+		boardSize = size;
+		buttonPanel.revalidate();
+	}
+
 	/**
 	 * Contm nosso principal objeto de quadro da GUI e seus componentes.
 	 */
@@ -252,17 +431,7 @@ public class JogoDaVelhaGUI {
 
 		// Painel segurando os vrios botes que representam a grade do jogo da velha.
 		buttonPanel = new JPanel();
-		buttonPanel.setLayout(new GridLayout(3, 3));
-
-		buttons = new JButton[9];
-		for (int i = 0; i < buttons.length; i++) {
-			JButton button = new JButton(new ImageIcon(getClass().getResource(FREE_ICON)));
-			button.setActionCommand(i + "");
-			button.addActionListener(gridClickListener);
-
-			buttons[i] = button;
-			buttonPanel.add(button);
-		}
+		buildButtons(3);
 
 		// Painel mostrando botes que permitem ao usurio iniciar / recusar novo jogo.
 		optionsPanel = new JPanel();
@@ -0,0 +1,113 @@
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de duraes com faixas em potncias de dois de microssegundos: a
+ * faixa i conta as duraes de at 2^i microssegundos (a ltima conta tambm as
+ * maiores). Registrar uma durao s incrementa dois LongAdder, ento o
+ * histograma pode ficar ligado o tempo todo e ser usado por vrias threads.
+ *
+ * Os percentis so estimados pelo limite superior da faixa em que caem, ento
+ * erram para cima em no mximo o dobro.
+ */
+public class LatencyHistogram {
+	/**
+	 * Quantas faixas o histograma tem: a ltima comea em cerca de 18 minutos.
+	 */
+	public static final int BUCKETS = 31;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Registra uma durao, em nanossegundos.
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos) / 1000;
+
+		// A menor potncia de dois que no  menor que a durao.
+		int bucket = (micros <= 1) ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+
+		buckets[Math.min(bucket, BUCKETS - 1)].increment();
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Retorna quantas duraes foram registradas.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Retorna quantas duraes caram na faixa indicada.
+	 */
+	public long getBucketCount(int bucket) {
+		return buckets[bucket].sum();
+	}
+
+	/**
+	 * Retorna o limite superior da faixa indicada, em microssegundos.
+	 */
+	public static long getBucketLimit(int bucket) {
+		return 1L << bucket;
+	}
+
+	/**
+	 * Retorna a soma das duraes registradas, em nanossegundos.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Retorna a mdia das duraes, em milissegundos.
+	 */
+	public double getMeanMillis() {
+		long n = getCount();
+
+		return (n == 0) ? 0 : getSum() / 1e6 / n;
+	}
+
+	/**
+	 * Retorna a maior durao registrada, em milissegundos.
+	 */
+	public double getMaxMillis() {
+		return max.get() / 1e6;
+	}
+
+	/**
+	 * Retorna uma estimativa do percentil p (entre 0 e 100) das duraes, em
+	 * milissegundos.
+	 */
+	public double getPercentileMillis(double p) {
+		long n = getCount();
+
+		if (n == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(n * p / 100);
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += getBucketCount(i);
+
+			if (seen >= rank) {
+				return Math.min(getBucketLimit(i) / 1e3, getMaxMillis());
+			}
+		}
+
+		return getMaxMillis();
+	}
+}
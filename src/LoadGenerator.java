@@ -0,0 +1,294 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cliente de carga sem janela: abre vrias conexes ao mesmo tempo com um
+ * servidor e joga jogos inteiros em cada uma, pelo protocolo de texto do
+ * ServerGame, como o JogoDaVelhaGUI faria. Ao final, mostra quantos jogos por
+ * segundo foram jogados, os percentis do tempo de resposta do servidor a cada
+ * jogada e quantos erros houve.
+ *
+ * Opes:
+ * --host=H e --port=N: o servidor (padro: localhost:9999);
+ * --connections=N: quantas conexes jogam ao mesmo tempo (padro: 16);
+ * --games=G: quantos jogos cada conexo joga antes de enviar "#CG" (padro: 100);
+ * --moves=random, --moves=first ou --moves=4,0,8,...: as jogadas so sorteadas,
+ * a primeira posio livre, ou a primeira posio livre da lista (e, se
+ * nenhuma estiver, a primeira posio livre);
+ * --think=MS: quanto tempo o usurio simulado pensa antes de cada jogada;
+ * --seed=S: a semente dos sorteios, para repetir uma medio.
+ */
+public class LoadGenerator {
+	static String HOST = "localhost";
+	static int PORT = 9999;
+	static int CONNECTIONS = 16;
+	static int GAMES = 100;
+	static String MOVES = "random";
+	static long THINK_TIME = 0;
+	static long SEED = 1;
+
+	/**
+	 * A ordem de preferncia das jogadas, com --moves=4,0,8,..., ou null.
+	 */
+	static int[] SCRIPT = null;
+
+	/**
+	 * Quanto tempo o servidor levou para responder a cada jogada ou comando.
+	 */
+	private static final LatencyHistogram turnTimes = new LatencyHistogram();
+
+	/**
+	 * Jogos terminados, com cada resultado, e erros: conexes recusadas ou
+	 * perdidas e linhas que o protocolo no prev.
+	 */
+	private static final LongAdder games = new LongAdder();
+	private static final LongAdder playerWins = new LongAdder();
+	private static final LongAdder computerWins = new LongAdder();
+	private static final LongAdder ties = new LongAdder();
+	private static final LongAdder errors = new LongAdder();
+
+	public static void main(String[] args) throws InterruptedException {
+		parseArguments(args);
+
+		System.out.println("Jogando " + GAMES + " jogos em cada uma de " + CONNECTIONS + " conexes com " + HOST + ":"
+				+ PORT + "...");
+
+		ExecutorService clients = Server.newSessionExecutor();
+		CountDownLatch finished = new CountDownLatch(CONNECTIONS);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < CONNECTIONS; i++) {
+			Random random = new Random(SEED + i);
+
+			clients.execute(() -> {
+				try {
+					play(random);
+				}
+
+				catch (IOException | RuntimeException e) {
+					errors.increment();
+					System.err.println(e);
+				}
+
+				finally {
+					finished.countDown();
+				}
+			});
+		}
+
+		finished.await();
+		clients.shutdown();
+
+		report(System.nanoTime() - start);
+	}
+
+	/**
+	 * Joga GAMES jogos em uma conexo.
+	 */
+	static void play(Random random) throws IOException {
+		try (Socket socket = new Socket(HOST, PORT)) {
+			socket.setTcpNoDelay(true);
+
+			BufferedReader input = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			OutputStream output = socket.getOutputStream();
+			int played = 0;
+
+			// O primeiro quadro (ou resultado) chega sem que nada tenha sido enviado.
+			String line = input.readLine();
+
+			while (true) {
+				if (line == null) {
+					throw new IOException("O servidor fechou a conexo no meio de uma sesso.");
+				}
+
+				String reply;
+
+				// O token da sesso, enviado quando o servidor tem um dirio, no pede
+				// resposta.
+				if (line.startsWith(ServerGame.TOKEN)) {
+					line = input.readLine();
+					continue;
+				}
+
+				if (line.startsWith("#")) {
+					if (!countResult(line)) {
+						errors.increment();
+						System.err.println("Linha inesperada do servidor: " + line);
+					}
+
+					played++;
+
+					if (played >= GAMES) {
+						output.write(line("#CG").getBytes(StandardCharsets.US_ASCII));
+						output.flush();
+						return;
+					}
+
+					reply = line("#NG");
+				}
+
+				else {
+					reply = line(String.valueOf(chooseMove(line, random)));
+					think();
+				}
+
+				long sent = System.nanoTime();
+
+				output.write(reply.getBytes(StandardCharsets.US_ASCII));
+				output.flush();
+				line = input.readLine();
+				turnTimes.record(System.nanoTime() - sent);
+			}
+		}
+	}
+
+	/**
+	 * Conta o resultado de um jogo. Retorna false se a linha no for um.
+	 */
+	private static boolean countResult(String line) {
+		switch (line.trim()) {
+		case "#P":
+			playerWins.increment();
+			break;
+		case "#C":
+			computerWins.increment();
+			break;
+		case "#T":
+			ties.increment();
+			break;
+		default:
+			return false;
+		}
+
+		games.increment();
+		return true;
+	}
+
+	/**
+	 * Retorna o comando como a GUI o envia: println (text + "\n"), ou seja, com
+	 * uma linha vazia depois e o separador de linhas da plataforma.
+	 */
+	static String line(String text) {
+		return text + "\n" + System.lineSeparator();
+	}
+
+	/**
+	 * Escolhe uma posio livre do quadro, no formato de JogoDaVelha.drawBoard ().
+	 */
+	static int chooseMove(String board, Random random) {
+		// Pule as dimenses ("NxN/K:") das grades maiores que a clssica.
+		String cells = board.substring(board.indexOf(':') + 1);
+		int free = 0;
+
+		for (int i = 0; i < cells.length(); i++) {
+			if (cells.charAt(i) == '-') {
+				free++;
+			}
+		}
+
+		if (free == 0) {
+			return 0;
+		}
+
+		if (SCRIPT != null) {
+			for (int move : SCRIPT) {
+				if (move >= 0 && move < cells.length() && cells.charAt(move) == '-') {
+					return move;
+				}
+			}
+		}
+
+		// A n-sima posio livre: sorteada, ou a primeira.
+		int n = MOVES.equals("random") ? random.nextInt(free) : 0;
+
+		for (int i = 0; i < cells.length(); i++) {
+			if (cells.charAt(i) == '-' && n-- == 0) {
+				return i;
+			}
+		}
+
+		return 0;
+	}
+
+	private static void think() {
+		if (THINK_TIME <= 0) {
+			return;
+		}
+
+		try {
+			Thread.sleep(THINK_TIME);
+		}
+
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static void report(long elapsed) {
+		double seconds = elapsed / 1e9;
+
+		System.out.printf("%d jogos em %.2f s: %.1f jogos/s (%d vitrias do jogador, %d do computador, %d empates)%n",
+				games.sum(), seconds, games.sum() / seconds, playerWins.sum(), computerWins.sum(), ties.sum());
+		System.out.printf("Resposta a cada jogada (ms), em %d jogadas: p50 %.3f, p90 %.3f, p99 %.3f, mx. %.3f%n",
+				turnTimes.getCount(), turnTimes.getPercentileMillis(50), turnTimes.getPercentileMillis(90),
+				turnTimes.getPercentileMillis(99), turnTimes.getMaxMillis());
+		System.out.println("Erros: " + errors.sum());
+	}
+
+	static void parseArguments(String[] args) {
+		for (String arg : args) {
+			String[] option = arg.split("=", 2);
+
+			if (option.length != 2) {
+				System.err.println("Opo ignorada: " + arg);
+				continue;
+			}
+
+			switch (option[0]) {
+			case "--host":
+				HOST = option[1];
+				break;
+			case "--port":
+				PORT = Integer.parseInt(option[1]);
+				break;
+			case "--connections":
+				CONNECTIONS = Integer.parseInt(option[1]);
+				break;
+			case "--games":
+				GAMES = Integer.parseInt(option[1]);
+				break;
+			case "--moves":
+				MOVES = option[1];
+
+				if (!MOVES.equals("random") && !MOVES.equals("first")) {
+					String[] moves = MOVES.split(",");
+					SCRIPT = new int[moves.length];
+
+					for (int i = 0; i < moves.length; i++) {
+						SCRIPT[i] = Integer.parseInt(moves[i].trim());
+					}
+				}
+
+				break;
+			case "--think":
+				THINK_TIME = Long.parseLong(option[1]);
+				break;
+			case "--seed":
+				SEED = Long.parseLong(option[1]);
+				break;
+			default:
+				System.err.println("Opo ignorada: " + arg);
+				break;
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Um mapa de long para long sem objetos por entrada: as chaves e os valores
+ * ficam em dois vetores, com endereamento aberto e sondagem linear. Uma chave
+ * ausente vale 0. No  seguro entre threads: cada thread deve somar no seu
+ * prprio mapa e juntar os mapas no fim com addAll ().
+ */
+public class LongLongMap {
+	/**
+	 * A frao mxima de posies ocupadas antes de os vetores dobrarem.
+	 */
+	private static final double LOAD_FACTOR = 0.5;
+
+	private long[] keys;
+	private long[] values;
+	private boolean[] used;
+	private int size = 0;
+	private int mask;
+
+	/**
+	 * Estabelece um mapa vazio com espao para capacity chaves antes de crescer.
+	 */
+	public LongLongMap(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(2, (int) (capacity / LOAD_FACTOR)) - 1) << 1;
+
+		keys = new long[slots];
+		values = new long[slots];
+		used = new boolean[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * Retorna o valor da chave, ou 0 se ela no estiver no mapa.
+	 */
+	public long get(long key) {
+		int slot = find(key);
+
+		return used[slot] ? values[slot] : 0;
+	}
+
+	/**
+	 * Associa o valor  chave.
+	 */
+	public void put(long key, long value) {
+		values[claim(key)] = value;
+	}
+
+	/**
+	 * Soma delta ao valor da chave e retorna o novo valor.
+	 */
+	public long add(long key, long delta) {
+		int slot = claim(key);
+
+		return values[slot] += delta;
+	}
+
+	/**
+	 * Soma ao valor de cada chave deste mapa o da mesma chave em other.
+	 */
+	public void addAll(LongLongMap other) {
+		for (int slot = 0; slot < other.keys.length; slot++) {
+			if (other.used[slot]) {
+				add(other.keys[slot], other.values[slot]);
+			}
+		}
+	}
+
+	/**
+	 * Retorna quantas chaves esto no mapa.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Retorna as chaves do mapa, em uma ordem qualquer.
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int i = 0;
+
+		for (int slot = 0; slot < keys.length; slot++) {
+			if (used[slot]) {
+				result[i++] = keys[slot];
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Retorna a posio da chave, ou a posio livre em que ela entraria.
+	 */
+	private int find(long key) {
+		int slot = mix(key) & mask;
+
+		while (used[slot] && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Retorna a posio da chave, acrescentando-a com valor 0 se preciso.
+	 */
+	private int claim(long key) {
+		int slot = find(key);
+
+		if (used[slot]) {
+			return slot;
+		}
+
+		if (size + 1 > keys.length * LOAD_FACTOR) {
+			grow();
+			slot = find(key);
+		}
+
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = 0;
+		size++;
+
+		return slot;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldKeys.length * 2];
+		used = new boolean[oldKeys.length * 2];
+		mask = keys.length - 1;
+
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldUsed[slot]) {
+				int to = find(oldKeys[slot]);
+
+				used[to] = true;
+				keys[to] = oldKeys[slot];
+				values[to] = oldValues[slot];
+			}
+		}
+	}
+
+	/**
+	 * Espalha os bits da chave, para que chaves prximas no caiam em posies
+	 * vizinhas.
+	 */
+	private static int mix(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+
+		return (int) (key ^ (key >>> 32));
+	}
+}
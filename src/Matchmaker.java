@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Junta os clientes que querem jogar contra outra pessoa em salas de dois (veja
+ * Room), sem nenhuma trava.
+ *
+ * Como todos os clientes jogam na mesma grade, qualquer par serve, e a fila de
+ * espera nunca tem mais de um cliente: o prximo a chegar forma a sala com ele.
+ * Por isso a fila  uma nica referncia atmica, como a de um Exchanger.
+ * Quem chega com a vaga livre a ocupa com compareAndSet e dorme com
+ * LockSupport.park (); quem chega com a vaga ocupada a esvazia, marca o bilhete
+ * de quem esperava como pareado (tambm com compareAndSet, para no disputar
+ * com o fim da espera dele), cria a sala e o acorda.
+ */
+public class Matchmaker {
+	/**
+	 * Os estados de um bilhete.
+	 */
+	private static final int WAITING = 0;
+	private static final int MATCHED = 1;
+	private static final int CANCELLED = 2;
+
+	/**
+	 * O pedido de um cliente  espera de um adversrio.
+	 */
+	private static final class Ticket {
+		private final Thread thread = Thread.currentThread();
+		private final AtomicInteger state = new AtomicInteger(WAITING);
+		private volatile Room.Seat seat;
+	}
+
+	private final int boardSize;
+	private final int winLength;
+
+	/**
+	 * Onde os jogos das salas podem ser assistidos, ou null.
+	 */
+	private Spectators spectators = null;
+
+	/**
+	 * O bilhete de quem espera um adversrio, ou null.
+	 */
+	private final AtomicReference<Ticket> waiting = new AtomicReference<>();
+
+	/**
+	 * Estabelece salas com jogos em uma grade boardSize x boardSize.
+	 */
+	public Matchmaker(int boardSize, int winLength) {
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+	}
+
+	/**
+	 * Transmite os jogos das novas salas aos espectadores de spectators.
+	 */
+	public void setSpectators(Spectators spectators) {
+		this.spectators = spectators;
+	}
+
+	/**
+	 * Espera at waitMillis milissegundos por um adversrio e retorna o lugar de
+	 * quem chama na sala dos dois, ou null se ningum aparecer a tempo. Quem
+	 * esperava fica com o lado FIRST, e quem chegou depois, com o SECOND.
+	 */
+	public Room.Seat join(long waitMillis) {
+		Ticket ticket = new Ticket();
+
+		while (true) {
+			Ticket other = waiting.get();
+
+			// Ningum esperando: espere na vaga.
+			if (other == null) {
+				if (waiting.compareAndSet(null, ticket)) {
+					return await(ticket, waitMillis);
+				}
+			}
+
+			// Tire quem espera da vaga. Se a espera dele j tiver acabado, tente de novo.
+			else if (waiting.compareAndSet(other, null) && other.state.compareAndSet(WAITING, MATCHED)) {
+				Room room = new Room(new JogoDaVelha(boardSize, winLength), other.thread, ticket.thread,
+						spectators);
+
+				other.seat = new Room.Seat(room, Room.FIRST);
+				LockSupport.unpark(other.thread);
+
+				return new Room.Seat(room, Room.SECOND);
+			}
+		}
+	}
+
+	private Room.Seat await(Ticket ticket, long waitMillis) {
+		long deadline = System.nanoTime() + waitMillis * 1000000L;
+
+		while (ticket.seat == null) {
+			long left = deadline - System.nanoTime();
+
+			if (left <= 0 && ticket.state.compareAndSet(WAITING, CANCELLED)) {
+				// Libere a vaga, se ningum a tiver esvaziado.
+				waiting.compareAndSet(ticket, null);
+				return null;
+			}
+
+			// Se o bilhete j foi pareado, a sala est para chegar.
+			LockSupport.parkNanos(this, Math.max(left, 1000));
+		}
+
+		return ticket.seat;
+	}
+}
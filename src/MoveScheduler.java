@@ -0,0 +1,301 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Agenda as jogadas do computador de todas as sesses em um grupo fixo de
+ * threads. Cada sesso entrega o seu jogo com um prazo, e as jogadas esperam em
+ * uma fila de prioridade em que a de prazo mais prximo  buscada primeiro.
+ *
+ * Quando a fila no pode ser esvaziada a tempo, as buscas ficam mais rasas em
+ * vez de a fila crescer. O agendador acompanha quanto tempo a busca de cada
+ * nvel costuma levar, e cada jogada que sai da fila usa a busca mais profunda
+ * que, repetida para as jogadas que esperam atrs dela, ainda cabe no seu
+ * prazo; os nveis seguintes so as profundidades de DEGRADED_DEPTHS. Uma
+ * jogada cujo prazo j passou usa o nvel mais raso. Se a fila chegar a
+ * MAX_QUEUED_PER_WORKER jogadas por thread, a nova jogada entra nela j marcada
+ * com o nvel mais raso. Ela nunca  buscada na thread de quem a pediu, que no
+ * NioServer  a thread do seletor.
+ *
+ * Se a busca falhar, a jogada do computador  a primeira posio livre, para
+ * que a sesso nunca receba a vez sem que o computador tenha jogado.
+ *
+ * Cada thread tem a sua prpria busca para cada nvel, ento as buscas no
+ * precisam ser seguras entre threads.
+ */
+public class MoveScheduler {
+	/**
+	 * As profundidades das buscas usadas quando h jogadas demais esperando, da
+	 * menos  mais degradada. O nvel 0  a busca normal, de searchFactory.
+	 */
+	private static final int[] DEGRADED_DEPTHS = { 4, 2, 1 };
+
+	/**
+	 * Quantas jogadas por thread podem esperar na fila.
+	 */
+	private static final int MAX_QUEUED_PER_WORKER = 64;
+
+	/**
+	 * Uma jogada  espera de uma thread.
+	 */
+	private static final class Job implements Comparable<Job> {
+		private final JogoDaVelha game;
+		private final long deadline;
+		private final long sequence;
+		private final IntConsumer done;
+
+		/**
+		 * O nvel j escolhido para a jogada, ou -1 para escolher quando ela sair da
+		 * fila.
+		 */
+		private final int level;
+
+		Job(JogoDaVelha game, long deadline, long sequence, IntConsumer done, int level) {
+			this.game = game;
+			this.deadline = deadline;
+			this.sequence = sequence;
+			this.done = done;
+			this.level = level;
+		}
+
+		// Prazos iguais so atendidos por ordem de chegada.
+		public int compareTo(Job other) {
+			int order = Long.compare(deadline - other.deadline, 0);
+
+			return (order != 0) ? order : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private final int workerThreads;
+	private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * As buscas de cada thread: a normal no nvel 0 e as de DEGRADED_DEPTHS depois.
+	 */
+	private final ThreadLocal<SearchStrategy[]> searches;
+
+	/**
+	 * A mdia mvel, em nanossegundos, de quanto dura uma busca de cada nvel.
+	 */
+	private final AtomicLongArray searchTimes = new AtomicLongArray(DEGRADED_DEPTHS.length + 1);
+
+	/**
+	 * Quantas jogadas foram buscadas em cada nvel, quantas chegaram com a fila
+	 * cheia, quantas terminaram depois do prazo e em quantas a busca falhou.
+	 */
+	private final LongAdder[] levelCounts = new LongAdder[DEGRADED_DEPTHS.length + 1];
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder late = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * Onde so registrados os ns de cada busca.
+	 */
+	private ServerMetrics metrics = new ServerMetrics();
+
+	/**
+	 * Estabelece um agendador com workerThreads threads, em que a busca normal de
+	 * cada uma  criada por searchFactory na sua primeira jogada.
+	 */
+	public MoveScheduler(int workerThreads, Supplier<SearchStrategy> searchFactory) {
+		this.workerThreads = workerThreads;
+		this.searches = ThreadLocal.withInitial(() -> {
+			SearchStrategy[] levels = new SearchStrategy[DEGRADED_DEPTHS.length + 1];
+			levels[0] = searchFactory.get();
+
+			for (int i = 0; i < DEGRADED_DEPTHS.length; i++) {
+				levels[i + 1] = new AlphaBetaSearch(DEGRADED_DEPTHS[i]);
+			}
+
+			return levels;
+		});
+
+		for (int i = 0; i < levelCounts.length; i++) {
+			levelCounts[i] = new LongAdder();
+		}
+
+		for (int i = 0; i < workerThreads; i++) {
+			Thread worker = new Thread(this::work, "jogadas-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Registra em metrics os ns visitados por cada busca.
+	 */
+	public void setMetrics(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Pede a jogada do computador no jogo, com prazo no instante deadline (em
+	 * System.nanoTime ()). A jogada  feita no prprio jogo, e done recebe o nvel
+	 * da busca usada, na thread que a buscou. At l, o jogo pertence ao
+	 * agendador.
+	 */
+	public void submit(JogoDaVelha game, long deadline, IntConsumer done) {
+		int level = -1;
+
+		// Fila cheia: a jogada entra com a busca mais rasa.
+		if (queue.size() >= workerThreads * MAX_QUEUED_PER_WORKER) {
+			rejected.increment();
+			level = DEGRADED_DEPTHS.length;
+		}
+
+		queue.add(new Job(game, deadline, sequence.getAndIncrement(), done, level));
+	}
+
+	/**
+	 * Faz a jogada do computador no jogo, com prazo no instante deadline, e s
+	 * retorna depois que ela estiver feita. Retorna o nvel da busca usada.
+	 */
+	public int play(JogoDaVelha game, long deadline) throws InterruptedException {
+		CountDownLatch moved = new CountDownLatch(1);
+		int[] level = new int[1];
+
+		submit(game, deadline, used -> {
+			level[0] = used;
+			moved.countDown();
+		});
+		moved.await();
+
+		return level[0];
+	}
+
+	private void work() {
+		while (true) {
+			Job job;
+
+			try {
+				job = queue.take();
+			}
+
+			catch (InterruptedException e) {
+				return;
+			}
+
+			int level = (job.level >= 0) ? job.level : levelOf(job);
+			long start = System.nanoTime();
+
+			levelCounts[level].increment();
+			run(job, searches.get()[level], level);
+
+			// Cada busca pesa 1/8 na mdia, ento ela acompanha mudanas de carga.
+			long average = searchTimes.get(level);
+			searchTimes.set(level, average + (System.nanoTime() - start - average) / 8);
+		}
+	}
+
+	/**
+	 * Escolhe o nvel de busca de uma jogada que acaba de sair da fila.
+	 */
+	private int levelOf(Job job) {
+		long slack = job.deadline - System.nanoTime();
+
+		// Esta jogada e a parte da fila que cabe a cada thread.
+		long rounds = 1 + queue.size() / workerThreads;
+
+		for (int level = 0; level < DEGRADED_DEPTHS.length; level++) {
+			if (searchTimes.get(level) * rounds <= slack) {
+				return level;
+			}
+		}
+
+		return DEGRADED_DEPTHS.length;
+	}
+
+	private void run(Job job, SearchStrategy search, int level) {
+		JogoDaVelha game = job.game;
+		int moves = game.getNumMoves();
+
+		try {
+			game.setWhoseTurn(game.getCOMPUTER_TURN());
+			game.placePiece(game.getCOMPUTER_TURN(), search.bestMove(game));
+			metrics.searched(search.getNodeCount());
+		}
+
+		// Uma busca com erro no pode derrubar a thread nem deixar a sesso sem a
+		// jogada do computador: desfaa o que a busca deixou no jogo e jogue na
+		// primeira posio livre.
+		catch (RuntimeException e) {
+			System.err.println(e);
+			failed.increment();
+
+			while (game.getNumMoves() > moves) {
+				game.undoPiece();
+			}
+
+			int[] legal = new int[game.getCells()];
+
+			game.setWhoseTurn(game.getCOMPUTER_TURN());
+
+			if (game.legalMoves(legal) > 0) {
+				game.placePiece(game.getCOMPUTER_TURN(), legal[0]);
+			}
+		}
+
+		finally {
+			if (System.nanoTime() - job.deadline > 0) {
+				late.increment();
+			}
+
+			job.done.accept(level);
+		}
+	}
+
+	/**
+	 * Retorna quantas jogadas esperam por uma thread.
+	 */
+	public int getQueueLength() {
+		return queue.size();
+	}
+
+	/**
+	 * Retorna quantas jogadas foram buscadas no nvel indicado: 0 para a busca
+	 * normal e 1 em diante para as mais rasas.
+	 */
+	public long getLevelCount(int level) {
+		return levelCounts[level].sum();
+	}
+
+	/**
+	 * Retorna quantas jogadas chegaram com a fila cheia e foram buscadas com o
+	 * nvel mais raso.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Retorna quantas buscas falharam e foram trocadas pela primeira posio
+	 * livre.
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * Retorna quantas jogadas terminaram depois do prazo.
+	 */
+	public long getLateCount() {
+		return late.sum();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder levels = new StringBuilder();
+
+		for (int i = 0; i < levelCounts.length; i++) {
+			levels.append((i == 0) ? "" : "/").append(getLevelCount(i));
+		}
+
+		return String.format("%s jogadas por nvel, %d com a fila cheia, %d depois do prazo, %d com erro", levels,
+				getRejectedCount(), getLateCount(), getFailedCount());
+	}
+}
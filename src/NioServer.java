@@ -0,0 +1,704 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Servidor alternativo ao de Server.main () que atende todas as conexes em uma
+ * nica thread com um Selector, sem fluxos bloqueantes. Fala o mesmo protocolo
+ * do ServerGame: o quadro antes de cada jogada do usurio, "#P", "#C" ou "#T"
+ * ao fim de cada jogo e "#NG" ou "#CG" vindos do cliente.
+ *
+ * Enquanto o usurio pensa, a sesso  s um JogoDaVelha e dois buffers
+ * pequenos, sem thread nenhuma. As jogadas do computador so buscadas por um
+ * MoveScheduler, com o prazo mais prximo primeiro, e cada uma das suas threads
+ * tem a sua prpria busca (e tabela de transposio), compartilhada por todas
+ * as sesses que ela atende.
+ */
+public class NioServer {
+	/**
+	 * Os resultados enviados ao fim de cada jogo.
+	 */
+	private static final byte[] PLAYER_WON = "#P\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] COMPUTER_WON = "#C\n".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TIE = "#T\n".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * O maior tamanho de uma linha do cliente. Linhas maiores so descartadas.
+	 */
+	private static final int LINE_LIMIT = 64;
+
+	/**
+	 * Quantos quadros podem ficar esperando para ser enviados a um cliente antes
+	 * que o servidor pare de ler o que ele envia.
+	 */
+	private static final int PENDING_FRAMES = 4;
+
+	/**
+	 * Estados de uma sesso: esperando a jogada do usurio, esperando a jogada do
+	 * computador, esperando "#NG" ou "#CG", enviando o que falta antes de fechar e
+	 * fechada.
+	 */
+	private static final int AWAITING_MOVE = 0;
+	private static final int THINKING = 1;
+	private static final int AWAITING_DECISION = 2;
+	private static final int CLOSING = 3;
+	private static final int CLOSED = 4;
+	private final int port;
+	private final int boardSize;
+	private final int winLength;
+
+	/**
+	 * O tamanho de um quadro das grades desta instncia.
+	 */
+	private final int frameLength;
+
+	/**
+	 * O agendador das jogadas do computador.
+	 */
+	private final MoveScheduler scheduler;
+
+	/**
+	 * Opes equivalentes s do Server: o mximo de sesses abertas (0 para sem
+	 * limite), o tempo de cada jogada e as threads da busca paralela nas grades
+	 * maiores que a clssica.
+	 */
+	private int maxSessions = 0;
+	private long moveTime = ServerGame.DEFAULT_MOVE_TIME;
+	private long moveDeadline = ServerGame.DEFAULT_MOVE_DEADLINE;
+	private ForkJoinPool searchPool = null;
+	private PositionCache positionCache = null;
+	private ServerMetrics metrics = new ServerMetrics();
+	private GameRecordLog gameLog = null;
+
+	/**
+	 * As sesses em que o computador j jogou,  espera da thread do Selector.
+	 */
+	private final Queue<Session> moved = new ConcurrentLinkedQueue<>();
+
+	private Selector selector;
+	private SelectionKey acceptKey;
+	private int sessions = 0;
+
+	/**
+	 * O estado de uma conexo, guardado como anexo da sua SelectionKey.
+	 */
+	private static final class Session {
+		private final SocketChannel channel;
+		private SelectionKey key;
+		private JogoDaVelha game;
+		private int state;
+
+		/**
+		 * Se o primeiro byte do cliente j foi examinado e se a sesso usa o
+		 * protocolo binrio. Veja BinaryProtocol.
+		 */
+		private boolean negotiated;
+		private boolean binary;
+
+		/**
+		 * Quando (em System.nanoTime ()) o quadro pedindo a jogada do usurio foi
+		 * preparado, ou 0 se a sesso no espera uma jogada.
+		 */
+		private long prompted;
+
+		/**
+		 * Os tempos do jogo atual, para o registro de jogos.
+		 */
+		private final GameRecordLog.Timings timings = new GameRecordLog.Timings();
+
+		/**
+		 * O que o cliente enviou e ainda no foi tratado, e o que falta enviar a ele.
+		 */
+		private final ByteBuffer in = ByteBuffer.allocate(LINE_LIMIT);
+		private final ByteBuffer out;
+
+		Session(SocketChannel channel, int frameLength) {
+			this.channel = channel;
+			this.out = ByteBuffer.allocate(frameLength * PENDING_FRAMES);
+		}
+	}
+
+	/**
+	 * Estabelece um servidor na porta indicada, com jogos em uma grade boardSize
+	 * x boardSize e workerThreads threads para as jogadas do computador.
+	 */
+	public NioServer(int port, int boardSize, int winLength, int workerThreads) {
+		this.port = port;
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+		this.frameLength = new JogoDaVelha(boardSize, winLength).getBoardLength();
+		this.scheduler = new MoveScheduler(workerThreads, this::newSearch);
+	}
+
+	/**
+	 * Define quantas sesses podem estar abertas ao mesmo tempo. As novas conexes
+	 * esperam na fila do socket at que alguma sesso termine.
+	 */
+	public void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+	}
+
+	/**
+	 * Define quanto tempo, em milissegundos, o computador pode pensar em cada
+	 * jogada nas grades maiores que a clssica.
+	 */
+	public void setMoveTime(long moveTime) {
+		this.moveTime = moveTime;
+	}
+
+	/**
+	 * Define o prazo, em milissegundos, de cada jogada do computador. Veja
+	 * MoveScheduler.
+	 */
+	public void setMoveDeadline(long moveDeadline) {
+		this.moveDeadline = moveDeadline;
+	}
+
+	/**
+	 * Faz o computador dividir a busca entre as threads de pool nas grades maiores
+	 * que a clssica.
+	 */
+	public void setSearchPool(ForkJoinPool searchPool) {
+		this.searchPool = searchPool;
+	}
+
+	/**
+	 * Faz o computador consultar cache antes de cada busca e guardar nele as
+	 * jogadas que escolher.
+	 */
+	public void setPositionCache(PositionCache positionCache) {
+		this.positionCache = positionCache;
+	}
+
+	/**
+	 * Registra as mtricas das sesses em metrics.
+	 */
+	public void setMetrics(ServerMetrics metrics) {
+		this.metrics = metrics;
+		this.scheduler.setMetrics(metrics);
+	}
+
+	/**
+	 * Registra os jogos das sesses em gameLog, ao fim de cada um.
+	 */
+	public void setGameLog(GameRecordLog gameLog) {
+		this.gameLog = gameLog;
+	}
+
+	/**
+	 * Retorna a busca de uma das threads de jogadas do computador.
+	 */
+	private SearchStrategy newSearch() {
+		SearchStrategy search = ServerGame.newSearchStrategy(boardSize, winLength, moveTime, searchPool);
+
+		return (positionCache == null) ? search : new CachedSearch(search, positionCache);
+	}
+
+	/**
+	 * Atende as conexes at que o processo seja encerrado.
+	 */
+	public void serve() throws IOException {
+		selector = Selector.open();
+
+		ServerSocketChannel server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+
+		System.out.println("O servidor NIO est agora em execuo na porta " + port + "...");
+
+		while (true) {
+			selector.select();
+
+			// Continue as sesses em que o computador acabou de jogar.
+			for (Session session = moved.poll(); session != null; session = moved.poll()) {
+				try {
+					computerMoved(session);
+				}
+
+				catch (IOException e) {
+					close(session);
+				}
+			}
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				if (!key.isValid()) {
+					continue;
+				}
+
+				if (key.isAcceptable()) {
+					accept(server);
+					continue;
+				}
+
+				Session session = (Session) key.attachment();
+
+				try {
+					if (key.isReadable()) {
+						read(session);
+					}
+
+					if (key.isValid() && key.isWritable()) {
+						flush(session);
+						handleInput(session);
+					}
+				}
+
+				catch (IOException e) {
+					close(session);
+				}
+			}
+		}
+	}
+
+	private void accept(ServerSocketChannel server) {
+		Session session;
+
+		try {
+			SocketChannel channel = server.accept();
+
+			if (channel == null) {
+				return;
+			}
+
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			session = new Session(channel, frameLength);
+			session.key = channel.register(selector, SelectionKey.OP_READ, session);
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+			return;
+		}
+
+		sessions++;
+		metrics.sessionOpened();
+
+		// No limite de sesses, pare de aceitar at que alguma termine.
+		if (maxSessions > 0 && sessions >= maxSessions) {
+			acceptKey.interestOps(0);
+		}
+
+		try {
+			newGame(session);
+			flush(session);
+		}
+
+		catch (IOException e) {
+			close(session);
+		}
+	}
+
+	/**
+	 * Comea um novo jogo na sesso, sorteando quem joga primeiro.
+	 */
+	private void newGame(Session session) {
+		// O mesmo jogo serve para todos os jogos da sesso, ento a memria usada no
+		// cresce com o nmero de jogos.
+		if (session.game == null) {
+			session.game = new JogoDaVelha(boardSize, winLength);
+		}
+
+		session.game.reset();
+		session.game.chooseFirstPlayer();
+		session.timings.start();
+		metrics.gameStarted();
+
+		if (session.game.getFirstTurn() == session.game.getCOMPUTER_TURN()) {
+			think(session);
+		}
+
+		else {
+			promptMove(session);
+		}
+	}
+
+	/**
+	 * Envia o quadro e espera a jogada do usurio.
+	 */
+	private void promptMove(Session session) {
+		JogoDaVelha game = session.game;
+
+		game.setWhoseTurn(game.getPLAYER_TURN());
+
+		// Um quadro reenviado no reinicia a contagem do tempo do usurio.
+		if (session.prompted == 0) {
+			session.prompted = System.nanoTime();
+		}
+
+		session.state = AWAITING_MOVE;
+
+		ByteBuffer out = session.out;
+		int offset = out.arrayOffset() + out.position();
+
+		if (session.binary) {
+			out.position(out.position()
+					+ BinaryProtocol.encodeFrame(game, BinaryProtocol.YOUR_MOVE, out.array(), offset));
+		}
+
+		else {
+			out.position(out.position() + game.encodeBoard(out.array(), offset));
+		}
+	}
+
+	/**
+	 * Entrega a jogada do computador ao agendador. At ela terminar, o jogo
+	 * pertence a ele e nada do cliente  lido.
+	 */
+	private void think(Session session) {
+		session.state = THINKING;
+
+		long start = System.nanoTime();
+
+		scheduler.submit(session.game, start + moveDeadline * 1000000L, level -> {
+			metrics.computerMoved(System.nanoTime() - start);
+			session.timings.computerMoved(System.nanoTime() - start, level);
+			moved.add(session);
+			selector.wakeup();
+		});
+	}
+
+	/**
+	 * Continua a sesso depois da jogada do computador, j na thread do Selector.
+	 */
+	private void computerMoved(Session session) throws IOException {
+		// A conexo caiu enquanto o computador jogava: s agora o jogo pode ser
+		// registrado.
+		if (session.state == CLOSED) {
+			recordGame(session);
+			return;
+		}
+
+		if (session.game.isOver()) {
+			metrics.gameFinished(session.game.result());
+			recordGame(session);
+			sendResult(session);
+		}
+
+		else {
+			promptMove(session);
+		}
+
+		// O cliente pode ter enviado mais linhas enquanto o computador pensava.
+		handleInput(session);
+	}
+
+	private void sendResult(Session session) {
+		if (session.binary) {
+			ByteBuffer out = session.out;
+			int offset = out.arrayOffset() + out.position();
+
+			out.position(out.position()
+					+ BinaryProtocol.encodeFrame(session.game, session.game.result(), out.array(), offset));
+			session.state = AWAITING_DECISION;
+			return;
+		}
+
+		switch (session.game.result()) {
+		case 1:
+			session.out.put(PLAYER_WON);
+			break;
+		case 2:
+			session.out.put(COMPUTER_WON);
+			break;
+		default:
+			session.out.put(TIE);
+			break;
+		}
+
+		session.state = AWAITING_DECISION;
+	}
+
+	private void read(Session session) throws IOException {
+		int received = session.channel.read(session.in);
+
+		if (received < 0) {
+			close(session);
+			return;
+		}
+
+		metrics.received(received);
+
+		handleInput(session);
+	}
+
+	/**
+	 * Trata as linhas completas recebidas enquanto a sesso espera o cliente e h
+	 * espao para a resposta, e envia o que houver para enviar.
+	 */
+	private void handleInput(Session session) throws IOException {
+		ByteBuffer in = session.in;
+		byte[] bytes = in.array();
+		in.flip();
+
+		// Deixe espao para a resposta a um HELLO e o quadro reenviado depois dela.
+		while (isWaitingForClient(session) && session.out.remaining() >= 2 * frameLength
+				&& in.hasRemaining()) {
+			if (!session.negotiated) {
+				negotiate(session, in);
+				continue;
+			}
+
+			// No protocolo binrio cada byte  um comando.
+			if (session.binary) {
+				handleCommand(session, bytes[in.position()] & 0xFF);
+				in.position(in.position() + 1);
+				continue;
+			}
+
+			int end = in.position();
+
+			while (end < in.limit() && bytes[end] != '\n') {
+				end++;
+			}
+
+			// Espere o resto da linha. Uma linha maior que o buffer nunca termina, ento
+			//  descartada.
+			if (end == in.limit()) {
+				if (in.position() == 0 && in.limit() == in.capacity()) {
+					in.position(in.limit());
+				}
+
+				break;
+			}
+
+			handleLine(session, bytes, in.position(), end);
+			in.position(end + 1);
+		}
+
+		in.compact();
+		flush(session);
+	}
+
+	/**
+	 * Trata uma linha do cliente, entre from (inclusive) e to (exclusive).
+	 */
+	private void handleLine(Session session, byte[] bytes, int from, int to) {
+		// Ignore os espaos em volta da linha, incluindo o "\r" de quem envia "\r\n".
+		while (from < to && bytes[from] <= ' ') {
+			from++;
+		}
+
+		while (to > from && bytes[to - 1] <= ' ') {
+			to--;
+		}
+
+		// Assim como o Scanner do ServerGame, ignore as linhas em branco.
+		if (from == to) {
+			return;
+		}
+
+		if (session.state == AWAITING_MOVE) {
+			playerMove(session, parseMove(bytes, from, to));
+		}
+
+		else if (matches(bytes, from, to, "#NG")) {
+			newGame(session);
+		}
+
+		else if (matches(bytes, from, to, "#CG")) {
+			session.state = CLOSING;
+		}
+	}
+
+	/**
+	 * Examina o primeiro byte do cliente. Se for um HELLO, responde ao pedido do
+	 * protocolo binrio e reenvia o estado atual no protocolo escolhido.
+	 */
+	private void negotiate(Session session, ByteBuffer in) {
+		session.negotiated = true;
+
+		if ((in.get(in.position()) & 0xFF) != BinaryProtocol.HELLO) {
+			return;
+		}
+
+		in.position(in.position() + 1);
+		session.binary = BinaryProtocol.supports(session.game);
+		session.out.put(BinaryProtocol.reply(session.game));
+
+		if (session.state == AWAITING_MOVE) {
+			promptMove(session);
+		}
+
+		else {
+			sendResult(session);
+		}
+	}
+
+	/**
+	 * Trata um comando do protocolo binrio.
+	 */
+	private void handleCommand(Session session, int command) {
+		if (session.state == AWAITING_MOVE) {
+			playerMove(session, (command < session.game.getCells()) ? command : -1);
+		}
+
+		else if (command == BinaryProtocol.NEW_GAME) {
+			newGame(session);
+		}
+
+		else if (command == BinaryProtocol.CLOSE_GAME) {
+			session.state = CLOSING;
+		}
+	}
+
+	/**
+	 * Faz a jogada do usurio, ou reenvia o quadro se ela no for vlida.
+	 */
+	private void playerMove(Session session, int move) {
+		JogoDaVelha game = session.game;
+
+		if (!game.legalMove(move)) {
+			promptMove(session);
+		}
+
+		else {
+			game.placePiece(game.getPLAYER_TURN(), move);
+			metrics.playerMoved(System.nanoTime() - session.prompted);
+			session.timings.playerMoved(System.nanoTime() - session.prompted);
+			session.prompted = 0;
+
+			if (game.isOver()) {
+				metrics.gameFinished(game.result());
+				recordGame(session);
+				sendResult(session);
+			}
+
+			else {
+				think(session);
+			}
+		}
+	}
+
+	/**
+	 * Retorna o nmero decimal entre from e to, ou -1 se no for um.
+	 */
+	private static int parseMove(byte[] bytes, int from, int to) {
+		if (to - from > 9) {
+			return -1;
+		}
+
+		int move = 0;
+
+		for (int i = from; i < to; i++) {
+			if (bytes[i] < '0' || bytes[i] > '9') {
+				return -1;
+			}
+
+			move = move * 10 + (bytes[i] - '0');
+		}
+
+		return move;
+	}
+
+	private static boolean matches(byte[] bytes, int from, int to, String command) {
+		if (to - from != command.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < command.length(); i++) {
+			if (bytes[from + i] != command.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isWaitingForClient(Session session) {
+		return session.state == AWAITING_MOVE || session.state == AWAITING_DECISION;
+	}
+
+	/**
+	 * Envia o que o socket aceitar sem bloquear e ajusta os eventos de interesse
+	 * da sesso: escrita enquanto houver o que enviar, leitura enquanto a sesso
+	 * esperar o cliente e houver espao para a resposta (veja handleInput ()).
+	 */
+	private void flush(Session session) throws IOException {
+		ByteBuffer out = session.out;
+
+		if (out.position() > 0) {
+			out.flip();
+			metrics.sent(session.channel.write(out));
+			out.compact();
+		}
+
+		if (session.state == CLOSING && out.position() == 0) {
+			close(session);
+			return;
+		}
+
+		if (session.state == CLOSED) {
+			return;
+		}
+
+		int interest = 0;
+
+		if (out.position() > 0) {
+			interest |= SelectionKey.OP_WRITE;
+		}
+
+		if (isWaitingForClient(session) && out.remaining() >= 2 * frameLength && session.in.hasRemaining()) {
+			interest |= SelectionKey.OP_READ;
+		}
+
+		session.key.interestOps(interest);
+	}
+
+	/**
+	 * Registra o jogo da sesso no registro de jogos, se houver um.
+	 */
+	private void recordGame(Session session) {
+		if (gameLog != null) {
+			gameLog.append(session.game, session.timings);
+		}
+	}
+
+	private void close(Session session) {
+		if (session.state == CLOSED) {
+			return;
+		}
+
+		// Um jogo interrompido pela queda da conexo tambm  registrado; se o
+		// computador estiver jogando nele, isso fica para computerMoved ().
+		if (session.game != null && session.state != THINKING && !session.game.isOver()) {
+			recordGame(session);
+		}
+
+		session.state = CLOSED;
+		session.key.cancel();
+
+		try {
+			session.channel.close();
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+		}
+
+		sessions--;
+		metrics.sessionClosed();
+
+		// Volte a aceitar conexes se o limite tinha sido atingido.
+		if (maxSessions > 0 && sessions < maxSessions) {
+			acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Busca alfa-beta que divide as jogadas da raiz entre as threads de um
+ * ForkJoinPool. Cada jogada  examinada em uma cpia do jogo por uma
+ * AlphaBetaSearch prpria, sem tabela de transposio, e o resultado  sempre o
+ * mesmo de uma AlphaBetaSearch sequencial com a mesma profundidade.
+ *
+ * No modo "young brothers wait", a primeira jogada (a mais promissora) 
+ * buscada antes das demais, e o seu valor  usado como alfa nas buscas
+ * paralelas dos irmos, o que permite podar bem mais. Sem esse modo, todas as
+ * jogadas so buscadas ao mesmo tempo com a janela completa.
+ *
+ * Uma instncia pode ser usada por uma sesso de cada vez; vrias instncias
+ * podem compartilhar o mesmo ForkJoinPool.
+ */
+public class ParallelSearch implements SearchStrategy {
+	/**
+	 * As threads que executam as buscas.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Quantas jogadas  frente a busca examina.
+	 */
+	private final int depth;
+
+	/**
+	 * Se a primeira jogada deve ser buscada antes das demais.
+	 */
+	private final boolean youngBrothersWait;
+
+	/**
+	 * Usada apenas para ordenar as jogadas da raiz, na mesma ordem da busca
+	 * sequencial.
+	 */
+	private final AlphaBetaSearch ordering;
+
+	/**
+	 * Quantos ns a ltima busca visitou, somando todas as threads.
+	 */
+	private final LongAdder nodeCount = new LongAdder();
+
+	/**
+	 * Estabelece uma busca com um ForkJoinPool prprio de parallelism threads.
+	 */
+	public ParallelSearch(int parallelism, int depth) {
+		this(new ForkJoinPool(parallelism), depth, true);
+	}
+
+	/**
+	 * Estabelece uma busca que usa as threads de pool.
+	 */
+	public ParallelSearch(ForkJoinPool pool, int depth, boolean youngBrothersWait) {
+		this.pool = pool;
+		this.depth = depth;
+		this.youngBrothersWait = youngBrothersWait;
+		this.ordering = new AlphaBetaSearch(depth);
+	}
+
+	public int bestMove(JogoDaVelha game) {
+		nodeCount.reset();
+
+		int[] moves = new int[game.getCells()];
+		int count = ordering.rootMoves(game, moves);
+
+		if (count == 0) {
+			return -1;
+		}
+
+		int[] values = new int[count];
+		int first = 0;
+		int alpha = -AlphaBetaSearch.INFINITY;
+
+		// Busque o irmo mais velho primeiro e use o seu valor como alfa.
+		if (youngBrothersWait) {
+			values[0] = scoreMove(game, moves[0], alpha);
+			alpha = values[0];
+			first = 1;
+		}
+
+		ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[count];
+
+		for (int i = first; i < count; i++) {
+			JogoDaVelha copy = copyOf(game);
+			int index = i, windowAlpha = alpha;
+
+			tasks[i] = pool.submit(() -> {
+				values[index] = scoreMove(copy, moves[index], windowAlpha);
+			});
+		}
+
+		for (int i = first; i < count; i++) {
+			tasks[i].join();
+		}
+
+		// Como na busca sequencial, fica a primeira jogada com o maior valor. As
+		// jogadas que no superaram alfa retornam no mximo alfa e nunca so escolhidas
+		// no lugar da primeira.
+		int best = 0;
+
+		for (int i = 1; i < count; i++) {
+			if (values[i] > values[best]) {
+				best = i;
+			}
+		}
+
+		return moves[best];
+	}
+
+	/**
+	 * Busca uma jogada da raiz com a janela [alpha, infinito].
+	 */
+	private int scoreMove(JogoDaVelha game, int move, int alpha) {
+		AlphaBetaSearch search = new AlphaBetaSearch(depth);
+		int value = search.scoreMove(game, move, alpha, AlphaBetaSearch.INFINITY);
+
+		nodeCount.add(search.getNodeCount());
+
+		return value;
+	}
+
+	/**
+	 * Retorna uma cpia do jogo para ser alterada por outra thread.
+	 */
+	private static JogoDaVelha copyOf(JogoDaVelha game) {
+		try {
+			return game.clone();
+		}
+
+		catch (CloneNotSupportedException e) {
+			throw new IllegalStateException("No foi possvel copiar o jogo.", e);
+		}
+	}
+
+	public long getNodeCount() {
+		return nodeCount.sum();
+	}
+
+	/**
+	 * Retorna o nmero de threads usadas pela busca.
+	 */
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Encerra as threads da busca. S deve ser chamado por quem criou o pool.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+}
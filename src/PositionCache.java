@@ -0,0 +1,229 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache das jogadas escolhidas pelo computador, compartilhado por todas as
+ * sesses do servidor. As posies so identificadas pelo hash cannico do
+ * JogoDaVelha e as jogadas so guardadas vistas pela simetria cannica, ento
+ * todas as rotaes e reflexes de uma posio usam a mesma entrada. Veja
+ * CachedSearch.
+ *
+ * O cache tem tamanho fixo e  dividido em grupos de WAYS entradas. Quando um
+ * grupo est cheio, a entrada substituda  escolhida pelo algoritmo do
+ * relgio: cada entrada consultada ganha uma segunda chance, e o ponteiro do
+ * grupo passa por ela sem substitu-la uma vez.
+ *
+ * Pode ser usado por vrias threads ao mesmo tempo sem travas. Cada entrada 
+ * guardada em dois long, a chave misturada com os dados (por ou exclusivo) e os
+ * dados, ento uma entrada lida enquanto outra thread a escrevia no confere
+ * com a chave e conta apenas como ausente. Um cache serve para uma nica
+ * dimenso de grade.
+ */
+public class PositionCache {
+	/**
+	 * Quantas entradas tem cada grupo.
+	 */
+	public static final int WAYS = 4;
+
+	/**
+	 * Os dados de uma entrada guardam a jogada mais um nos 16 bits inferiores (0
+	 * indica uma entrada vazia) e a marca de consulta recente do relgio.
+	 */
+	private static final long MOVE_MASK = 0xFFFF;
+	private static final long REFERENCED = 1L << 16;
+
+	private final AtomicLongArray keys;
+	private final AtomicLongArray data;
+
+	/**
+	 * O ponteiro do relgio de cada grupo. Uma corrida entre duas threads s
+	 * muda qual entrada  substituda.
+	 */
+	private final int[] hands;
+
+	/**
+	 * Mscara usada para escolher o grupo de uma chave.
+	 */
+	private final int bucketMask;
+
+	/**
+	 * Contadores de consultas encontradas, no encontradas, de gravaes e de
+	 * entradas substitudas.
+	 */
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Estabelece um cache com pelo menos capacity entradas, arredondado para uma
+	 * potncia de dois.
+	 */
+	public PositionCache(int capacity) {
+		int size = Integer.highestOneBit(Math.max(WAYS, capacity - 1)) << 1;
+
+		keys = new AtomicLongArray(size);
+		data = new AtomicLongArray(size);
+		hands = new int[size / WAYS];
+		bucketMask = (size / WAYS) - 1;
+	}
+
+	/**
+	 * Retorna a jogada guardada para a posio, vista pela simetria cannica, ou
+	 * -1 se a posio no estiver no cache.
+	 */
+	public int get(long key) {
+		int first = firstOf(key);
+
+		for (int i = first; i < first + WAYS; i++) {
+			long entry = data.get(i);
+
+			if (entry != 0 && (keys.get(i) ^ entry) == key) {
+				// Marque a entrada como consultada para que o relgio a poupe uma vez.
+				if ((entry & REFERENCED) == 0) {
+					write(i, key, entry | REFERENCED);
+				}
+
+				hits.increment();
+				return (int) (entry & MOVE_MASK) - 1;
+			}
+		}
+
+		misses.increment();
+		return -1;
+	}
+
+	/**
+	 * Guarda a jogada escolhida para a posio, vista pela simetria cannica.
+	 */
+	public void put(long key, int move) {
+		int first = firstOf(key);
+		long entry = (move + 1) & MOVE_MASK;
+		int free = -1;
+
+		stores.increment();
+
+		for (int i = first; i < first + WAYS; i++) {
+			long current = data.get(i);
+
+			if (current == 0) {
+				free = (free < 0) ? i : free;
+			}
+
+			// A posio j est no cache: atualize a jogada.
+			else if ((keys.get(i) ^ current) == key) {
+				write(i, key, entry | (current & REFERENCED));
+				return;
+			}
+		}
+
+		if (free < 0) {
+			free = victimOf(first);
+			evictions.increment();
+		}
+
+		write(free, key, entry);
+	}
+
+	/**
+	 * Escolhe a entrada a substituir em um grupo cheio: a primeira, a partir do
+	 * ponteiro, que no foi consultada desde a ltima passagem.
+	 */
+	private int victimOf(int first) {
+		int bucket = first / WAYS;
+		int hand = hands[bucket];
+
+		for (int step = 0; step < 2 * WAYS; step++) {
+			int i = first + ((hand + step) % WAYS);
+			long entry = data.get(i);
+
+			if ((entry & REFERENCED) == 0) {
+				hands[bucket] = (hand + step + 1) % WAYS;
+				return i;
+			}
+
+			// Segunda chance: tire a marca e siga em frente.
+			write(i, keys.get(i) ^ entry, entry & ~REFERENCED);
+		}
+
+		return first + hand;
+	}
+
+	private void write(int i, long key, long entry) {
+		data.set(i, entry);
+		keys.set(i, key ^ entry);
+	}
+
+	/**
+	 * Remove todas as entradas e zera os contadores. No deve ser chamado enquanto
+	 * outras threads usam o cache.
+	 */
+	public void clear() {
+		for (int i = 0; i < data.length(); i++) {
+			data.set(i, 0);
+			keys.set(i, 0);
+		}
+
+		hits.reset();
+		misses.reset();
+		stores.reset();
+		evictions.reset();
+	}
+
+	/**
+	 * Retorna quantas consultas encontraram a posio.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Retorna quantas consultas no encontraram a posio.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Retorna a frao das consultas que encontraram a posio, entre 0 e 1.
+	 */
+	public double getHitRate() {
+		long hit = getHits();
+		long total = hit + getMisses();
+
+		return (total == 0) ? 0 : (double) hit / total;
+	}
+
+	/**
+	 * Retorna quantas jogadas foram gravadas.
+	 */
+	public long getStores() {
+		return stores.sum();
+	}
+
+	/**
+	 * Retorna quantas entradas foram substitudas por outras.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Retorna o nmero de entradas do cache.
+	 */
+	public int getCapacity() {
+		return data.length();
+	}
+
+	private int firstOf(long key) {
+		// Misture os bits altos: a chave cannica  a menor entre as simetrias, ento
+		// os seus bits mais altos tendem a zero.
+		return (int) ((key ^ (key >>> 29)) & bucketMask) * WAYS;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d consultas, %.1f%% encontradas, %d gravaes, %d substituies",
+				getHits() + getMisses(), 100 * getHitRate(), getStores(), getEvictions());
+	}
+}
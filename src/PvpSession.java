@@ -0,0 +1,230 @@
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Um dos lados de uma Room, jogado por uma conexo com o mesmo protocolo de
+ * texto do ServerGame: o quadro quando  a vez do cliente, "#P", "#C" ou "#T"
+ * ao fim de cada jogo (do ponto de vista dele) e "#NG" ou "#CG" vindos do
+ * cliente.
+ *
+ * Cada cliente v as suas marcas como as do jogador ('1' no quadro) e as do
+ * adversrio como as do computador ('2'), ento o lado SECOND recebe o quadro
+ * com as marcas trocadas. O protocolo binrio no  oferecido: um HELLO recebe
+ * BinaryProtocol.DECLINED e o estado atual  reenviado.
+ *
+ * Se o adversrio sair no meio de um jogo, o cliente vence por desistncia.
+ * Se depois disso o cliente pedir outro jogo, start () retorna true, e quem
+ * chamou deve continuar a sesso contra o computador.
+ */
+public class PvpSession {
+	private final Room room;
+	private final int side;
+	private final BufferedReader input;
+	private final DataOutputStream output;
+	private final JogoDaVelha game;
+
+	/**
+	 * Onde a sesso registra as suas mtricas.
+	 */
+	private ServerMetrics metrics = new ServerMetrics();
+
+	/**
+	 * O quadro enviado ao cliente e se o primeiro byte dele j foi examinado.
+	 */
+	private final byte[] board;
+	private boolean negotiated = false;
+
+	/**
+	 * Estabelece o lado side da sala, jogado pela conexo com os fluxos indicados.
+	 */
+	public PvpSession(Room room, int side, BufferedReader input, DataOutputStream output) {
+		this.room = room;
+		this.side = side;
+		this.input = input;
+		this.output = output;
+		this.game = room.getGame();
+		this.board = new byte[game.getBoardLength()];
+	}
+
+	/**
+	 * Registra as mtricas da sesso em metrics.
+	 */
+	public void setMetrics(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Joga na sala at que o cliente envie "#CG" ou saia. Retorna true se o
+	 * adversrio saiu e o cliente pediu outro jogo, que deve ser contra o
+	 * computador.
+	 */
+	public boolean start() throws IOException {
+		try {
+			while (true) {
+				int result = playGame();
+
+				// Cada jogo  contado uma vez, pelo lado FIRST; as desistncias no contam.
+				if (side == Room.FIRST && result != 0) {
+					metrics.gameFinished(result);
+				}
+
+				if (!readDecision()) {
+					return false;
+				}
+
+				if (room.isOpponentGone(side) || !room.awaitNewGame(side)) {
+					return true;
+				}
+			}
+		}
+
+		finally {
+			room.leave(side);
+		}
+	}
+
+	/**
+	 * Joga um jogo at o fim e envia o resultado ao cliente. Retorna o resultado
+	 * do ponto de vista do lado FIRST, no formato de JogoDaVelha.result (), ou 0
+	 * se o adversrio saiu.
+	 */
+	private int playGame() throws IOException {
+		if (side == Room.FIRST) {
+			metrics.gameStarted();
+		}
+
+		while (room.awaitTurn(side) == side && !room.isOpponentGone(side)) {
+			int move = readMove();
+
+			while (!game.legalMove(move)) {
+				move = readMove();
+			}
+
+			room.play(side, move);
+		}
+
+		if (room.isOpponentGone(side) && !game.isOver()) {
+			System.out.println("O adversrio saiu; o jogador vence por desistncia.");
+			send("#P\n");
+			return 0;
+		}
+
+		sendResult();
+		return game.result();
+	}
+
+	/**
+	 * Envia o quadro e l a jogada do cliente, ou -1 se no for uma jogada.
+	 */
+	private int readMove() throws IOException {
+		sendBoard();
+
+		String line = readLine();
+
+		if (line == null) {
+			return -1;
+		}
+
+		try {
+			return Integer.parseInt(line);
+		}
+
+		catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * L "#NG" ou "#CG" depois de um jogo. Retorna true para "#NG".
+	 */
+	private boolean readDecision() throws IOException {
+		while (true) {
+			output.flush();
+
+			String line = readLine();
+
+			if (line == null) {
+				sendResult();
+			}
+
+			else if (line.equals("#NG")) {
+				return true;
+			}
+
+			else if (line.equals("#CG")) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * L a prxima linha no vazia do cliente, sem os espaos em volta. Retorna
+	 * null se o cliente pediu o protocolo binrio, que  recusado: quem chama
+	 * deve reenviar o estado atual.
+	 */
+	private String readLine() throws IOException {
+		output.flush();
+
+		if (!negotiated) {
+			negotiated = true;
+			input.mark(1);
+
+			if (input.read() == BinaryProtocol.HELLO) {
+				send(BinaryProtocol.DECLINED + "\n");
+				return null;
+			}
+
+			input.reset();
+		}
+
+		String line = input.readLine();
+
+		while (line != null && line.trim().isEmpty()) {
+			line = input.readLine();
+		}
+
+		if (line == null) {
+			throw new IOException("O jogador saiu da sala.");
+		}
+
+		return line.trim();
+	}
+
+	/**
+	 * Envia o quadro do ponto de vista do cliente.
+	 */
+	private void sendBoard() throws IOException {
+		int length = game.encodeBoard(board, 0);
+
+		// O lado SECOND joga com as marcas do computador: troque-as.
+		if (side == Room.SECOND) {
+			for (int i = length - game.getCells() - 1; i < length - 1; i++) {
+				board[i] = (board[i] == '1') ? (byte) '2' : (board[i] == '2') ? (byte) '1' : board[i];
+			}
+		}
+
+		output.write(board, 0, length);
+	}
+
+	/**
+	 * Envia o resultado do jogo do ponto de vista do cliente.
+	 */
+	private void sendResult() throws IOException {
+		int result = game.result();
+
+		if (result == 3 || result == 0) {
+			send("#T\n");
+		}
+
+		else {
+			boolean firstWon = result == 1;
+			send((firstWon == (side == Room.FIRST)) ? "#P\n" : "#C\n");
+		}
+	}
+
+	private void send(String command) throws IOException {
+		output.write(command.getBytes(StandardCharsets.US_ASCII));
+	}
+}
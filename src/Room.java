@@ -0,0 +1,204 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Uma sala em que duas pessoas jogam uma contra a outra, cada uma na sua
+ * conexo, no mesmo JogoDaVelha. O lado FIRST joga com as marcas do jogador e o
+ * SECOND com as do computador.
+ *
+ * A vez passa de uma thread para a outra sem travas: quem joga altera o jogo,
+ * publica a jogada em turn (uma escrita voltil, que torna a jogada visvel) e
+ * acorda a outra thread com LockSupport.unpark (). Quem espera dorme com
+ * LockSupport.park () at que turn, o nmero do jogo ou os lados presentes
+ * mudem. Assim o jogo s  alterado pela thread que tem a vez.
+ */
+public class Room {
+	/**
+	 * Os lados da sala.
+	 */
+	public static final int FIRST = 0;
+	public static final int SECOND = 1;
+
+	/**
+	 * O valor de turn quando o jogo terminou.
+	 */
+	public static final int OVER = 2;
+
+	private final JogoDaVelha game;
+	private final Thread[] threads;
+
+	/**
+	 * Onde os jogos da sala podem ser assistidos, ou null, e a transmisso deles.
+	 */
+	private final Spectators spectators;
+	private final Broadcast broadcast;
+
+	/**
+	 * De quem  a vez (FIRST ou SECOND), ou OVER.
+	 */
+	private final AtomicInteger turn = new AtomicInteger();
+
+	/**
+	 * O nmero do jogo atual, os lados que pediram outro jogo ("#NG") e os que
+	 * saram da sala, como mscaras de bits indexadas pelo lado.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+	private final AtomicInteger ready = new AtomicInteger();
+	private final AtomicInteger gone = new AtomicInteger();
+
+	/**
+	 * Estabelece uma sala com o jogo indicado, em que first e second so as
+	 * threads das conexes de cada lado, e comea o primeiro jogo. Os jogos so
+	 * transmitidos aos espectadores de spectators, se no for null.
+	 */
+	Room(JogoDaVelha game, Thread first, Thread second, Spectators spectators) {
+		this.game = game;
+		this.threads = new Thread[] { first, second };
+		this.spectators = spectators;
+		this.broadcast = (spectators == null) ? null : spectators.open();
+
+		newGame();
+	}
+
+	/**
+	 * O lugar de uma conexo em uma sala: a sala e o lado dela.
+	 */
+	public static final class Seat {
+		private final Room room;
+		private final int side;
+
+		Seat(Room room, int side) {
+			this.room = room;
+			this.side = side;
+		}
+
+		public Room getRoom() {
+			return room;
+		}
+
+		/**
+		 * Retorna o lado da conexo: FIRST ou SECOND.
+		 */
+		public int getSide() {
+			return side;
+		}
+	}
+
+	/**
+	 * Retorna o jogo da sala. S deve ser alterado pelo lado que tem a vez.
+	 */
+	public JogoDaVelha getGame() {
+		return game;
+	}
+
+	/**
+	 * Retorna a transmisso dos jogos da sala, ou null.
+	 */
+	public Broadcast getBroadcast() {
+		return broadcast;
+	}
+
+	/**
+	 * Retorna o nmero do jogo atual.
+	 */
+	public int getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Retorna a marca do lado no JogoDaVelha ({player} _TURN).
+	 */
+	public int markOf(int side) {
+		return (side == FIRST) ? game.getPLAYER_TURN() : game.getCOMPUTER_TURN();
+	}
+
+	/**
+	 * Espera at que seja a vez do lado, que o jogo termine ou que o outro lado
+	 * saia. Retorna o valor de turn.
+	 */
+	public int awaitTurn(int side) {
+		int current = turn.get();
+
+		while (current != side && current != OVER && !isOpponentGone(side)) {
+			LockSupport.park(this);
+			current = turn.get();
+		}
+
+		return current;
+	}
+
+	/**
+	 * Faz a jogada do lado, que deve ter a vez e j ter conferido que ela 
+	 * vlida, e passa a vez ao outro lado.
+	 */
+	public void play(int side, int move) {
+		game.placePiece(markOf(side), move);
+
+		if (broadcast != null) {
+			broadcast.publish(game);
+		}
+
+		turn.set(game.isOver() ? OVER : 1 - side);
+		LockSupport.unpark(threads[1 - side]);
+	}
+
+	/**
+	 * Registra que o lado quer outro jogo e espera o outro lado. Retorna true se o
+	 * novo jogo comeou, ou false se o outro lado saiu da sala.
+	 */
+	public boolean awaitNewGame(int side) {
+		int current = generation.get();
+		int bit = 1 << side;
+
+		// O ltimo a pedir comea o jogo.
+		if (ready.getAndUpdate(r -> r | bit) == (1 << (1 - side))) {
+			ready.set(0);
+			newGame();
+			LockSupport.unpark(threads[1 - side]);
+			return true;
+		}
+
+		while (generation.get() == current && !isOpponentGone(side)) {
+			LockSupport.park(this);
+		}
+
+		return generation.get() != current;
+	}
+
+	/**
+	 * Retira o lado da sala e acorda o outro. O ltimo a sair encerra a
+	 * transmisso.
+	 */
+	public void leave(int side) {
+		int left = gone.updateAndGet(g -> g | (1 << side));
+
+		if (left == 3 && broadcast != null) {
+			spectators.close(broadcast);
+		}
+
+		LockSupport.unpark(threads[1 - side]);
+	}
+
+	/**
+	 * Retorna true se o outro lado saiu da sala.
+	 */
+	public boolean isOpponentGone(int side) {
+		return (gone.get() & (1 << (1 - side))) != 0;
+	}
+
+	/**
+	 * Comea um novo jogo, sorteando quem joga primeiro. S  chamado quando
+	 * nenhum lado est jogando.
+	 */
+	private void newGame() {
+		game.reset();
+		game.chooseFirstPlayer();
+		turn.set((game.getFirstTurn() == game.getPLAYER_TURN()) ? FIRST : SECOND);
+
+		if (broadcast != null) {
+			broadcast.publish(game);
+		}
+
+		generation.incrementAndGet();
+	}
+}
@@ -0,0 +1,18 @@
+/**
+ * Uma estratgia de busca que escolhe a jogada do computador para um
+ * JogoDaVelha. Pode ser definida com JogoDaVelha.setSearchStrategy () para
+ * substituir o minimax original de bestGuess ().
+ */
+public interface SearchStrategy {
+	/**
+	 * Retorna a melhor jogada para o computador no estado atual do jogo. O jogo
+	 * pode ser alterado durante a busca, mas deve voltar ao mesmo estado antes de
+	 * o mtodo retornar.
+	 */
+	int bestMove(JogoDaVelha game);
+
+	/**
+	 * Retorna quantos ns a ltima chamada de bestMove () visitou.
+	 */
+	long getNodeCount();
+}
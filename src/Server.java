@@ -1,9 +1,17 @@
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+import javax.management.JMException;
 
 public class Server {
 	/**
@@ -11,47 +19,607 @@ public class Server {
 	 */
 	static int PORT = 9999;
 
+	/**
+	 * Dimenses dos jogos oferecidos: o lado da grade e quantas marcas seguidas
+	 * vencem. Podem ser alteradas com --size=N e --win=K.
+	 */
+	static int BOARD_SIZE = 3;
+	static int WIN_LENGTH = 3;
+
+	/**
+	 * Quantas threads a busca do computador pode usar nas grades maiores que a
+	 * clssica (--search-threads=N). Com 0, cada busca roda na thread da conexo.
+	 */
+	static int SEARCH_THREADS = 0;
+	static ForkJoinPool SEARCH_POOL = null;
+
+	/**
+	 * Quanto tempo, em milissegundos, o computador pode pensar em cada jogada nas
+	 * grades maiores que a clssica (--move-time=MS).
+	 */
+	static long MOVE_TIME = ServerGame.DEFAULT_MOVE_TIME;
+
+	/**
+	 * Quantas sesses podem ser jogadas ao mesmo tempo (--max-sessions=N). Com 0,
+	 * o servidor atende um cliente de cada vez, como originalmente.
+	 */
+	static int MAX_SESSIONS = 0;
+
+	/**
+	 * Com --engine=nio, as conexes so atendidas pelo NioServer, em uma nica
+	 * thread com um Selector, e as jogadas do computador por WORKERS threads
+	 * (--workers=N).
+	 */
+	static String ENGINE = "blocking";
+	static int WORKERS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * O cache de jogadas do computador compartilhado por todas as sesses, com
+	 * CACHE_SIZE entradas (--cache=N, 0 para nenhum). Com --cache-warmup=P, ele 
+	 * preenchido ao iniciar com todas as posies das primeiras P jogadas.
+	 */
+	static int CACHE_SIZE = 0;
+	static int CACHE_WARMUP = 0;
+	static PositionCache POSITION_CACHE = null;
+
+	/**
+	 * Com --scheduler=N, as jogadas do computador das sesses do servidor
+	 * bloqueante so buscadas por um MoveScheduler de N threads, em vez de na
+	 * thread de cada sesso. O NioServer sempre usa um, com WORKERS threads. O
+	 * prazo de cada jogada  MOVE_DEADLINE milissegundos (--move-deadline=MS).
+	 */
+	static int SCHEDULER_THREADS = 0;
+	static long MOVE_DEADLINE = ServerGame.DEFAULT_MOVE_DEADLINE;
+	static MoveScheduler SCHEDULER = null;
+
+	/**
+	 * As mtricas de todas as sesses, publicadas por JMX e, com
+	 * --metrics-port=N, em http://localhost:N/metrics.
+	 */
+	static final ServerMetrics METRICS = new ServerMetrics();
+	static int METRICS_PORT = 0;
+
+	/**
+	 * Com --journal=ARQUIVO, as sesses do servidor bloqueante so guardadas em um
+	 * SessionJournal, com espao para JOURNAL_SIZE registros (--journal-size=N)
+	 * e gravado no disco a cada JOURNAL_SYNC milissegundos (--journal-sync=MS).
+	 * Uma sesso sem conexo pode ser retomada por JOURNAL_TTL milissegundos
+	 * (--journal-ttl=MS; 0 para sempre).
+	 */
+	static String JOURNAL_PATH = null;
+	static int JOURNAL_SIZE = 1 << 16;
+	static long JOURNAL_SYNC = 100;
+	static long JOURNAL_TTL = 10 * 60 * 1000;
+	static SessionJournal JOURNAL = null;
+
+	/**
+	 * Com --mode=pvp, cada cliente do servidor com --max-sessions espera at
+	 * PVP_WAIT milissegundos (--pvp-wait=MS) por outro cliente para jogarem um
+	 * contra o outro em uma Room. Se ningum aparecer, joga contra o computador.
+	 */
+	static String MODE = "computer";
+	static long PVP_WAIT = 10000;
+	static Matchmaker MATCHMAKER = null;
+
+	/**
+	 * Com --spectator-port=N, os jogos do servidor bloqueante podem ser assistidos
+	 * por espectadores conectados  porta N (veja Spectators).
+	 */
+	static int SPECTATOR_PORT = 0;
+	static Spectators SPECTATORS = null;
+
+	/**
+	 * Com --game-log=DIRETRIO, cada jogo contra o computador  registrado em um
+	 * GameRecordLog nesse diretrio, com at GAME_LOG_SEGMENT registros por
+	 * arquivo (--game-log-segment=N).
+	 */
+	static String GAME_LOG_PATH = null;
+	static long GAME_LOG_SEGMENT = 1 << 20;
+	static GameRecordLog GAME_LOG = null;
+
+	/**
+	 * O tamanho do buffer de sada de cada conexo: cabe vrios quadros mesmo na
+	 * maior grade que o servidor aceita.
+	 */
+	private static final int OUTPUT_BUFFER_SIZE = 1024;
+
 	public static void main(String[] args) {
-		// Fora o servidor a funcionar at que ele seja encerrado.
-		while (true) {
-			// Monitore as conexes com o PORT (se estiver disponvel).
-			try {
-				ServerSocket welcomeSocket = new ServerSocket(PORT);
-				System.out.println("O servidor est agora em execuo na porta " + PORT + "...");
+		parseArguments(args);
+		publishMetrics();
+
+		if (SEARCH_THREADS > 0) {
+			SEARCH_POOL = new ForkJoinPool(SEARCH_THREADS);
+		}
+
+		if (CACHE_SIZE > 0) {
+			POSITION_CACHE = newPositionCache();
+		}
+
+		if (JOURNAL_PATH != null) {
+			JOURNAL = openJournal();
+		}
+
+		if (SPECTATOR_PORT > 0) {
+			SPECTATORS = openSpectators();
+		}
+
+		if (GAME_LOG_PATH != null) {
+			GAME_LOG = openGameLog();
+		}
+
+		if (MODE.equals("pvp")) {
+			if (MAX_SESSIONS > 0 && !ENGINE.equals("nio")) {
+				MATCHMAKER = new Matchmaker(BOARD_SIZE, WIN_LENGTH);
+				MATCHMAKER.setSpectators(SPECTATORS);
+			}
 
-				// Quando welcomeSocket  contatado, ele retorna um soquete para lidar com a
-				// comunicao com o cliente.
-				Socket connectionSocket = welcomeSocket.accept();
-				System.out.println("Um usurio se conectou de " + connectionSocket.getInetAddress());
+			else {
+				System.err.println("O modo pvp precisa do servidor bloqueante com --max-sessions.");
+			}
+		}
 
-				// Estabelea o fluxo de entrada do cliente.
-				BufferedReader clientInput = new BufferedReader(
-						new InputStreamReader(connectionSocket.getInputStream()));
+		if (SCHEDULER_THREADS > 0 && !ENGINE.equals("nio")) {
+			SCHEDULER = new MoveScheduler(SCHEDULER_THREADS, Server::newSearch);
+			SCHEDULER.setMetrics(METRICS);
+		}
 
-				// Estabelea o fluxo de sada do servidor.
-				DataOutputStream serverOutput = new DataOutputStream(connectionSocket.getOutputStream());
+		if (ENGINE.equals("nio")) {
+			serveNio();
+			return;
+		}
 
-				// Crie uma verso baseada em jogo do servidor do JogoDaVelha.
-				ServerGame game = new ServerGame(clientInput, serverOutput);
+		if (MAX_SESSIONS > 0) {
+			serveConcurrently();
+			return;
+		}
+
+		// Monitore as conexes com o PORT (se estiver disponvel). O mesmo socket
+		// atende um cliente depois do outro, ento a porta nunca fica fechada entre
+		// as sesses.
+		try (ServerSocket welcomeSocket = new ServerSocket(PORT)) {
+			System.out.println("O servidor est agora em execuo na porta " + PORT + "...");
 
+			// Fora o servidor a funcionar at que ele seja encerrado.
+			while (true) {
 				try {
-					game.start();
+					// Quando welcomeSocket  contatado, ele retorna um soquete para lidar com a
+					// comunicao com o cliente.
+					Socket connectionSocket = welcomeSocket.accept();
+
+					play(connectionSocket);
 				}
 
-				catch (CloneNotSupportedException e) {
-					System.err.println("O jogo falhou ao iniciar.");
-					System.exit(-1);
+				// Capture todos os erros de execuo / IO que possam ocorrer.
+				catch (IOException e) {
+					System.err.println(e);
 				}
+			}
+		}
 
-				finally {
-					connectionSocket.close();
+		catch (IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Atende vrios clientes ao mesmo tempo: um nico ServerSocket aceita as
+	 * conexes, e cada uma  jogada em uma thread prpria (virtual, se a JVM
+	 * tiver). Quando MAX_SESSIONS sesses esto em andamento, as novas conexes
+	 * esperam na fila do ServerSocket at que alguma termine.
+	 */
+	static void serveConcurrently() {
+		ExecutorService sessions = newSessionExecutor();
+		Semaphore slots = new Semaphore(MAX_SESSIONS);
+
+		try (ServerSocket welcomeSocket = new ServerSocket(PORT)) {
+			System.out.println("O servidor est agora em execuo na porta " + PORT + ", com at " + MAX_SESSIONS
+					+ " sesses simultneas...");
+
+			while (true) {
+				// S aceite outra conexo quando houver lugar para ela.
+				slots.acquireUninterruptibly();
+
+				Socket connectionSocket;
+
+				try {
+					connectionSocket = welcomeSocket.accept();
+				}
+
+				catch (IOException e) {
+					slots.release();
+					System.err.println(e);
+					continue;
 				}
+
+				sessions.execute(() -> {
+					try {
+						play(connectionSocket);
+					}
+
+					catch (IOException e) {
+						System.err.println(e);
+					}
+
+					finally {
+						slots.release();
+					}
+				});
+			}
+		}
+
+		// A porta no pde ser aberta.
+		catch (IOException e) {
+			System.err.println(e);
+		}
+
+		finally {
+			sessions.shutdown();
+		}
+	}
+
+	/**
+	 * Publica as mtricas por JMX e, se pedido, por HTTP. Se no for possvel, o
+	 * servidor continua sem elas.
+	 */
+	static void publishMetrics() {
+		try {
+			METRICS.register();
+		}
+
+		catch (JMException e) {
+			System.err.println(e);
+		}
+
+		if (METRICS_PORT > 0) {
+			try {
+				METRICS.startHttp(METRICS_PORT);
+				System.out.println("As mtricas esto em http://localhost:" + METRICS_PORT + "/metrics.");
 			}
 
-			// Capture todos os erros de execuo / IO que possam ocorrer.
 			catch (IOException e) {
 				System.err.println(e);
 			}
 		}
 	}
+
+	/**
+	 * Abre o dirio de sesses, ou retorna null se no for possvel us-lo.
+	 */
+	static SessionJournal openJournal() {
+		if (ENGINE.equals("nio")) {
+			System.err.println("O dirio de sesses s  usado pelo servidor bloqueante.");
+			return null;
+		}
+
+		if (!SessionJournal.supports(new JogoDaVelha(BOARD_SIZE, WIN_LENGTH))) {
+			System.err.println("O dirio de sesses s aceita grades de at 32 posies.");
+			return null;
+		}
+
+		try {
+			SessionJournal journal = SessionJournal.open(Paths.get(JOURNAL_PATH), JOURNAL_SIZE, BOARD_SIZE,
+					WIN_LENGTH, JOURNAL_SYNC, JOURNAL_TTL);
+
+			System.out.println("O dirio de sesses est em " + JOURNAL_PATH + ", com "
+					+ journal.getDetachedSessions() + " sesses que podem ser retomadas.");
+
+			return journal;
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Abre o registro de jogos, que escreve o que ainda estiver na fila quando o
+	 * servidor for encerrado, ou retorna null se no for possvel us-lo.
+	 */
+	static GameRecordLog openGameLog() {
+		if (!GameRecordLog.supports(new JogoDaVelha(BOARD_SIZE, WIN_LENGTH))) {
+			System.err.println("O registro de jogos s aceita grades de at 255 posies.");
+			return null;
+		}
+
+		try {
+			GameRecordLog log = GameRecordLog.open(Paths.get(GAME_LOG_PATH), BOARD_SIZE, WIN_LENGTH,
+					GAME_LOG_SEGMENT);
+
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					log.close();
+					System.out.println("Registro de jogos: " + log + ".");
+				}
+
+				catch (InterruptedException e) {
+					System.err.println(e);
+				}
+			}));
+
+			System.out.println("Os jogos so registrados em " + GAME_LOG_PATH + ".");
+
+			return log;
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+			return null;
+		}
+	}
+
+	/**
+	 * Comea a aceitar espectadores em SPECTATOR_PORT, em uma thread prpria, ou
+	 * retorna null se no for possvel assistir aos jogos.
+	 */
+	static Spectators openSpectators() {
+		if (ENGINE.equals("nio")) {
+			System.err.println("S os jogos do servidor bloqueante podem ser assistidos.");
+			return null;
+		}
+
+		Spectators spectators = new Spectators();
+		Thread acceptor = new Thread(() -> {
+			try {
+				spectators.serve(SPECTATOR_PORT, newSessionExecutor());
+			}
+
+			// A porta no pde ser aberta.
+			catch (IOException e) {
+				System.err.println(e);
+			}
+		}, "espectadores");
+
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		return spectators;
+	}
+
+	/**
+	 * Cria o cache de jogadas e, se pedido, o preenche antes de aceitar conexes.
+	 */
+	static PositionCache newPositionCache() {
+		PositionCache cache = new PositionCache(CACHE_SIZE);
+
+		if (CACHE_WARMUP > 0) {
+			CachedSearch search = new CachedSearch(
+					ServerGame.newSearchStrategy(BOARD_SIZE, WIN_LENGTH, MOVE_TIME, SEARCH_POOL), cache);
+			int positions = search.prepopulate(new JogoDaVelha(BOARD_SIZE, WIN_LENGTH), CACHE_WARMUP);
+
+			System.out.println("O cache de jogadas foi preenchido com " + positions + " posies.");
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Retorna a busca usada em cada thread do agendador.
+	 */
+	static SearchStrategy newSearch() {
+		SearchStrategy search = ServerGame.newSearchStrategy(BOARD_SIZE, WIN_LENGTH, MOVE_TIME, SEARCH_POOL);
+
+		return (POSITION_CACHE == null) ? search : new CachedSearch(search, POSITION_CACHE);
+	}
+
+	/**
+	 * Atende os clientes com o NioServer, usando as mesmas opes.
+	 */
+	static void serveNio() {
+		NioServer server = new NioServer(PORT, BOARD_SIZE, WIN_LENGTH, WORKERS);
+
+		server.setMaxSessions(MAX_SESSIONS);
+		server.setMoveTime(MOVE_TIME);
+		server.setSearchPool(SEARCH_POOL);
+		server.setPositionCache(POSITION_CACHE);
+		server.setMoveDeadline(MOVE_DEADLINE);
+		server.setMetrics(METRICS);
+		server.setGameLog(GAME_LOG);
+
+		try {
+			server.serve();
+		}
+
+		catch (IOException e) {
+			System.err.println(e);
+		}
+	}
+
+	/**
+	 * Retorna o executor que roda uma thread por sesso. As threads virtuais s
+	 * existem a partir do Java 21, ento so procuradas por reflexo; nas verses
+	 * anteriores so usadas threads comuns, criadas conforme a necessidade.
+	 */
+	static ExecutorService newSessionExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+
+		catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Junta o usurio a uma sala com outro e joga nela. Retorna true se a sesso
+	 * deve continuar contra o computador.
+	 */
+	static boolean playRoom(BufferedReader clientInput, DataOutputStream serverOutput) throws IOException {
+		System.out.println("Procurando um adversrio...");
+
+		Room.Seat seat = MATCHMAKER.join(PVP_WAIT);
+
+		if (seat == null) {
+			System.out.println("Nenhum adversrio apareceu; o usurio vai jogar contra o computador.");
+			return true;
+		}
+
+		Room room = seat.getRoom();
+
+		if (room.getBroadcast() != null && seat.getSide() == Room.FIRST) {
+			System.out.println("Os jogos desta sala podem ser assistidos com o nmero " + room.getBroadcast().getId()
+					+ ".");
+		}
+
+		PvpSession session = new PvpSession(room, seat.getSide(), clientInput, serverOutput);
+		session.setMetrics(METRICS);
+
+		return session.start();
+	}
+
+	/**
+	 * Joga uma sesso com o cliente da conexo e fecha a conexo ao final.
+	 */
+	static void play(Socket connectionSocket) throws IOException {
+		System.out.println("Um usurio se conectou de " + connectionSocket.getInetAddress());
+
+		// A conexo conta como uma s sesso, mesmo que passe de uma sala para o
+		// computador.
+		METRICS.sessionOpened();
+
+		try {
+			// Estabelea o fluxo de entrada do cliente.
+			BufferedReader clientInput = new BufferedReader(
+					new InputStreamReader(METRICS.countingInput(connectionSocket.getInputStream())));
+
+			// Estabelea o fluxo de sada do servidor. Ele  bufferizado, e o ServerGame o
+			// esvazia quando passa a vez ao cliente; sem o algoritmo de Nagle, cada quadro
+			// esvaziado sai imediatamente.
+			connectionSocket.setTcpNoDelay(true);
+			DataOutputStream serverOutput = new DataOutputStream(
+					new BufferedOutputStream(METRICS.countingOutput(connectionSocket.getOutputStream()),
+							OUTPUT_BUFFER_SIZE));
+
+			// No modo pvp, procure um adversrio antes. O computador s joga se ningum
+			// aparecer a tempo ou se o adversrio sair e o usurio quiser continuar.
+			if (MATCHMAKER != null && !playRoom(clientInput, serverOutput)) {
+				return;
+			}
+
+			// Crie uma verso baseada em jogo do servidor do JogoDaVelha.
+			ServerGame game = new ServerGame(clientInput, serverOutput, BOARD_SIZE, WIN_LENGTH);
+
+			game.setMoveTime(MOVE_TIME);
+
+			if (SEARCH_POOL != null) {
+				game.setSearchPool(SEARCH_POOL);
+			}
+
+			game.setPositionCache(POSITION_CACHE);
+			game.setMetrics(METRICS);
+			game.setJournal(JOURNAL);
+			game.setSpectators(SPECTATORS);
+			game.setGameLog(GAME_LOG);
+
+			if (SCHEDULER != null) {
+				game.setScheduler(SCHEDULER, MOVE_DEADLINE);
+			}
+
+			game.start();
+
+			if (POSITION_CACHE != null) {
+				System.out.println("Cache de jogadas: " + POSITION_CACHE + ".");
+			}
+
+			if (SCHEDULER != null) {
+				System.out.println("Agendador: " + SCHEDULER + ".");
+			}
+		}
+
+		finally {
+			METRICS.sessionClosed();
+			connectionSocket.close();
+		}
+	}
+
+	/**
+	 * L as opes da linha de comando no formato --nome=valor.
+	 */
+	static void parseArguments(String[] args) {
+		for (String arg : args) {
+			String[] option = arg.split("=", 2);
+
+			if (option.length != 2) {
+				System.err.println("Opo ignorada: " + arg);
+				continue;
+			}
+
+			switch (option[0]) {
+			case "--port":
+				PORT = Integer.parseInt(option[1]);
+				break;
+			case "--size":
+				BOARD_SIZE = Integer.parseInt(option[1]);
+				break;
+			case "--win":
+				WIN_LENGTH = Integer.parseInt(option[1]);
+				break;
+			case "--search-threads":
+				SEARCH_THREADS = Integer.parseInt(option[1]);
+				break;
+			case "--move-time":
+				MOVE_TIME = Long.parseLong(option[1]);
+				break;
+			case "--max-sessions":
+				MAX_SESSIONS = Integer.parseInt(option[1]);
+				break;
+			case "--engine":
+				ENGINE = option[1];
+				break;
+			case "--workers":
+				WORKERS = Integer.parseInt(option[1]);
+				break;
+			case "--cache":
+				CACHE_SIZE = Integer.parseInt(option[1]);
+				break;
+			case "--cache-warmup":
+				CACHE_WARMUP = Integer.parseInt(option[1]);
+				break;
+			case "--scheduler":
+				SCHEDULER_THREADS = Integer.parseInt(option[1]);
+				break;
+			case "--move-deadline":
+				MOVE_DEADLINE = Long.parseLong(option[1]);
+				break;
+			case "--metrics-port":
+				METRICS_PORT = Integer.parseInt(option[1]);
+				break;
+			case "--mode":
+				MODE = option[1];
+				break;
+			case "--pvp-wait":
+				PVP_WAIT = Long.parseLong(option[1]);
+				break;
+			case "--spectator-port":
+				SPECTATOR_PORT = Integer.parseInt(option[1]);
+				break;
+			case "--game-log":
+				GAME_LOG_PATH = option[1];
+				break;
+			case "--game-log-segment":
+				GAME_LOG_SEGMENT = Long.parseLong(option[1]);
+				break;
+			case "--journal":
+				JOURNAL_PATH = option[1];
+				break;
+			case "--journal-size":
+				JOURNAL_SIZE = Integer.parseInt(option[1]);
+				break;
+			case "--journal-sync":
+				JOURNAL_SYNC = Long.parseLong(option[1]);
+				break;
+			case "--journal-ttl":
+				JOURNAL_TTL = Long.parseLong(option[1]);
+				break;
+			default:
+				System.err.println("Opo desconhecida: " + arg);
+			}
+		}
+
+		// Uma sequncia maior que a grade nunca venceria: limite-a ao tamanho da
+		// grade. Sem --win, a sequncia continua sendo a padro, mesmo com --size.
+		if (WIN_LENGTH > BOARD_SIZE) {
+			WIN_LENGTH = BOARD_SIZE;
+		}
+	}
 }
\ No newline at end of file
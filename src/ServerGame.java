@@ -1,100 +1,514 @@
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.InputMismatchException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
 
 public class ServerGame {
 	private JogoDaVelha game;
-	private Scanner scanner;
 	private BufferedReader input;
 	private DataOutputStream output;
 
 	/**
-	 * Estabelece um jogo de servidor do JogoDaVelha baseado em fluxos de entrada e
-	 * sada especificados.
+	 * Codifica os quadros enviados ao cliente, reaproveitando o mesmo buffer em
+	 * todas as vezes da sesso.
+	 */
+	private final BoardEncoder boardEncoder = new BoardEncoder();
+
+	/**
+	 * Se o cliente j teve a chance de pedir o protocolo binrio (com o primeiro
+	 * byte que enviou) e se a sesso o est usando. Veja BinaryProtocol.
+	 */
+	private boolean negotiated = false;
+	private boolean binary = false;
+
+	/**
+	 * Os bytes de um quadro do protocolo binrio e os caracteres da ltima
+	 * palavra lida no protocolo de texto.
+	 */
+	private final byte[] frame = new byte[BinaryProtocol.FRAME_LENGTH];
+	private final StringBuilder token = new StringBuilder();
+
+	/**
+	 * Estados de uma sesso: comeando um jogo, esperando a jogada do usurio,
+	 * pensando na jogada do computador, avisando o resultado de um jogo, esperando
+	 * o usurio decidir se joga outro e encerrada.
+	 */
+	private static final int NEW_GAME = 0;
+	private static final int AWAITING_MOVE = 1;
+	private static final int COMPUTER_THINKING = 2;
+	private static final int GAME_OVER = 3;
+	private static final int AWAITING_DECISION = 4;
+	private static final int FINISHED = 5;
+
+	/**
+	 * Nmero de entradas da tabela de transposio de cada sesso. No jogo
+	 * clssico cabe todas as posies distintas (a menos de simetria) do
+	 * tabuleiro 3x3.
+	 */
+	private static final int TABLE_SIZE = 2048;
+	private static final int LARGE_TABLE_SIZE = 1 << 14;
+
+	/**
+	 * Nas grades maiores que a clssica no  possvel buscar at o fim do jogo. A
+	 * busca paralela examina LARGE_BOARD_DEPTH jogadas  frente; a sequencial
+	 * aprofunda at LARGE_BOARD_MAX_DEPTH enquanto houver tempo para a jogada.
+	 */
+	private static final int LARGE_BOARD_DEPTH = 4;
+	private static final int LARGE_BOARD_MAX_DEPTH = 16;
+
+	/**
+	 * Tempo padro, em milissegundos, de cada jogada do computador nas grades
+	 * maiores que a clssica.
+	 */
+	static final long DEFAULT_MOVE_TIME = 500;
+
+	/**
+	 * Prazo padro, em milissegundos, de cada jogada entregue a um MoveScheduler.
+	 */
+	static final long DEFAULT_MOVE_DEADLINE = 2 * DEFAULT_MOVE_TIME;
+
+	/**
+	 * As dimenses dos jogos desta sesso: o lado da grade e quantas marcas
+	 * seguidas vencem.
+	 */
+	private int boardSize;
+	private int winLength;
+
+	/**
+	 * A busca usada pelo computador em todos os jogos desta sesso. A tabela de
+	 * transposio sobrevive entre os jogos, ento as jogadas ficam mais baratas 
+	 * medida que a sesso avana. S  criada em start (), e s se no houver
+	 * agendador, a partir do tempo por jogada e das threads indicados.
+	 */
+	private SearchStrategy searchStrategy = null;
+	private long moveTime = DEFAULT_MOVE_TIME;
+	private ForkJoinPool searchPool = null;
+
+	/**
+	 * O cache de jogadas compartilhado com as outras sesses, ou null.
+	 */
+	private PositionCache positionCache = null;
+
+	/**
+	 * O agendador que busca as jogadas do computador, ou null para busc-las na
+	 * thread da sesso, e o prazo, em milissegundos, de cada jogada entregue a ele.
+	 */
+	private MoveScheduler scheduler = null;
+	private long moveDeadline = 0;
+
+	/**
+	 * Onde a sesso registra as suas mtricas. Sem setMetrics (), elas ficam s
+	 * nesta sesso.
+	 */
+	private ServerMetrics metrics = new ServerMetrics();
+
+	/**
+	 * O dirio em que a sesso  guardada, ou null, o registro da sesso nele, se
+	 * a sesso terminou com "#CG" e se a ltima leitura retomou outra sesso (veja
+	 * resume ()).
+	 */
+	private SessionJournal journal = null;
+	private SessionJournal.Entry journalEntry = null;
+	private boolean closedByUser = false;
+	private boolean resumed = false;
+
+	/**
+	 * Com o dirio, o servidor envia TOKEN seguido do token da sesso (em
+	 * hexadecimal) antes do primeiro quadro. Um cliente que perdeu a conexo pode
+	 * se conectar de novo e enviar RESUME seguido do token no lugar de uma jogada
+	 * ou de "#NG"/"#CG": o jogo anterior volta, e o servidor reenvia o quadro ou o
+	 * resultado. S no protocolo de texto.
+	 */
+	static final String TOKEN = "#TK";
+	static final String RESUME = "#RS";
+
+	/**
+	 * Onde os jogos da sesso podem ser assistidos, ou null, e a transmisso
+	 * deles.
+	 */
+	private Spectators spectators = null;
+	private Broadcast broadcast = null;
+
+	/**
+	 * Onde os jogos terminados da sesso so registrados, ou null, e os tempos do
+	 * jogo atual. Com o dirio, os tempos ficam no registro da sesso, para que um
+	 * jogo retomado continue com eles.
+	 */
+	private GameRecordLog gameLog = null;
+	private GameRecordLog.Timings timings = new GameRecordLog.Timings();
+
+	/**
+	 * Estabelece um jogo de servidor do JogoDaVelha clssico baseado em fluxos de
+	 * entrada e sada especificados.
 	 */
 	ServerGame(BufferedReader input, DataOutputStream output) {
+		this(input, output, 3, 3);
+	}
+
+	/**
+	 * Estabelece um jogo de servidor do JogoDaVelha em uma grade boardSize x
+	 * boardSize, em que vence quem fizer winLength marcas seguidas.
+	 */
+	ServerGame(BufferedReader input, DataOutputStream output, int boardSize, int winLength) {
 		this.input = input;
 		this.output = output;
+		this.boardSize = boardSize;
+		this.winLength = winLength;
 	}
 
-	// Estabelea e comece um novo jogo de JogoDaVelha.
-	public void start() throws InputMismatchException, CloneNotSupportedException, IOException {
-		scanner = new Scanner(input);
+	/**
+	 * Retorna a busca que o computador usa nos jogos com as dimenses indicadas.
+	 * No jogo clssico  a busca completa com tabela de transposio. Nas grades
+	 * maiores  a busca paralela nas threads de pool, se houver, ou a busca por
+	 * aprofundamento iterativo com moveTime milissegundos por jogada.
+	 */
+	static SearchStrategy newSearchStrategy(int boardSize, int winLength, long moveTime, ForkJoinPool pool) {
+		if (boardSize == 3 && winLength == 3) {
+			return new AlphaBetaSearch(new TranspositionTable(TABLE_SIZE));
+		}
+
+		if (pool != null) {
+			return new ParallelSearch(pool, LARGE_BOARD_DEPTH, true);
+		}
 
-		// Estabelea um novo jogo de JogoDaVelha!
-		game = new JogoDaVelha();
-		game.chooseFirstPlayer();
+		return new IterativeDeepeningSearch(moveTime, LARGE_BOARD_MAX_DEPTH, new TranspositionTable(LARGE_TABLE_SIZE));
+	}
+
+	/**
+	 * Define quanto tempo, em milissegundos, o computador pode pensar em cada
+	 * jogada nas grades maiores que a clssica. No jogo clssico a busca completa
+	 * j  imediata, ento nada muda.
+	 */
+	public void setMoveTime(long millis) {
+		moveTime = millis;
+	}
 
-		// Jogue at o jogo terminar!
-		while (!game.isOver()) {
-			// Se o computador tiver o primeiro movimento...
-			if (game.getFirstTurn() == game.getCOMPUTER_TURN()) {
-				doComputerTurn();
+	/**
+	 * Faz o computador dividir a busca entre as threads de pool nas grades maiores
+	 * que a clssica. No jogo clssico a busca sequencial com tabela de
+	 * transposio j  imediata, ento nada muda.
+	 */
+	public void setSearchPool(ForkJoinPool pool) {
+		searchPool = pool;
+	}
 
-				if (!game.isOver()) {
-					doPlayerTurn();
+	/**
+	 * Faz o computador consultar cache antes de cada busca e guardar nele as
+	 * jogadas que escolher. O cache deve ser da mesma dimenso de grade.
+	 */
+	public void setPositionCache(PositionCache cache) {
+		this.positionCache = cache;
+	}
+
+	/**
+	 * Entrega as jogadas do computador a scheduler, cada uma com prazo de
+	 * deadlineMillis milissegundos. A busca usada passa a ser a do agendador.
+	 */
+	public void setScheduler(MoveScheduler scheduler, long deadlineMillis) {
+		this.scheduler = scheduler;
+		this.moveDeadline = deadlineMillis;
+	}
+
+	/**
+	 * Registra as mtricas da sesso em metrics, em geral compartilhadas por todas
+	 * as sesses do servidor.
+	 */
+	public void setMetrics(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Guarda os jogos da sesso em journal, para que possam ser retomados se a
+	 * conexo ou o servidor cair. S vale nas grades aceitas pelo dirio.
+	 */
+	public void setJournal(SessionJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Transmite os jogos da sesso aos espectadores de spectators.
+	 */
+	public void setSpectators(Spectators spectators) {
+		this.spectators = spectators;
+	}
+
+	/**
+	 * Registra os jogos da sesso em gameLog, ao fim de cada um.
+	 */
+	public void setGameLog(GameRecordLog gameLog) {
+		this.gameLog = gameLog;
+	}
+
+	// Estabelea e jogue uma sesso de jogos de JogoDaVelha, at que o usurio no
+	// queira mais jogar.
+	public void start() throws IOException {
+		// O mesmo jogo serve para todos os jogos da sesso, ento a memria usada no
+		// cresce com o nmero de jogos.
+		game = new JogoDaVelha(boardSize, winLength);
+
+		// Com agendador, as buscas so as dele, ento a sesso no precisa da sua
+		// nem da tabela de transposio que viria com ela.
+		if (scheduler == null) {
+			searchStrategy = newSearchStrategy(boardSize, winLength, moveTime, searchPool);
+			game.setSearchStrategy(
+					(positionCache == null) ? searchStrategy : new CachedSearch(searchStrategy, positionCache));
+		}
+
+		int state = NEW_GAME;
+
+		if (journal != null && SessionJournal.supports(game)) {
+			journalEntry = journal.open();
+			timings = journalEntry.getTimings();
+			output.writeBytes(TOKEN + Long.toHexString(journalEntry.getToken()) + "\n");
+		}
+
+		if (spectators != null) {
+			broadcast = spectators.open();
+			System.out.println("Os jogos desta sesso podem ser assistidos com o nmero " + broadcast.getId() + ".");
+		}
+
+		try {
+			while (state != FINISHED) {
+				try {
+					state = step(state);
+				}
+
+				// Existem graciosamente se o usurio fechar a janela ou o jogo terminar de
+				// repente.
+				catch (NoSuchElementException e) {
+					System.err.println("O jogo foi encerrado pelo usurio.");
+					state = FINISHED;
 				}
 			}
+		}
 
-			// Caso contrrio, o jogador tem o primeiro movimento...
-			else {
-				doPlayerTurn();
+		finally {
+			// Um jogo interrompido pela queda da conexo tambm  registrado, a no ser
+			// que a sesso possa ser retomada: a ele  registrado uma s vez, por quem o
+			// terminar.
+			if (timings.isStarted() && !game.isOver() && (journalEntry == null || closedByUser)) {
+				recordGame();
+			}
 
-				if (!game.isOver()) {
-					doComputerTurn();
+			if (broadcast != null) {
+				spectators.close(broadcast);
+			}
+
+			// Uma sesso que no terminou com "#CG" pode ser retomada.
+			if (journalEntry != null) {
+				if (closedByUser) {
+					journal.close(journalEntry);
+				}
+
+				else {
+					journal.detach(journalEntry);
 				}
 			}
 		}
 
-		// O jogo acabou:
-		// Imprime o estado final do quadro.
-		// output.writeBytes(game.drawBoard());
+		// Apague os fluxos e volte ao servidor.
+		input.close();
+		output.close();
+	}
+
+	/**
+	 * Executa o estado atual da sesso e retorna o prximo.
+	 */
+	private int step(int state) throws IOException {
+		switch (state) {
+		// Estabelea um novo jogo de JogoDaVelha!
+		case NEW_GAME:
+			game.reset();
+			game.chooseFirstPlayer();
+			metrics.gameStarted();
+			timings.start();
+			recordJournal(SessionJournal.START);
+			broadcast();
+
+			return (game.getFirstTurn() == game.getCOMPUTER_TURN()) ? COMPUTER_THINKING : AWAITING_MOVE;
+
+		case AWAITING_MOVE:
+			doPlayerTurn();
+
+			if (resumed) {
+				return resumedState();
+			}
+
+			return game.isOver() ? GAME_OVER : COMPUTER_THINKING;
+
+		case COMPUTER_THINKING:
+			doComputerTurn();
+
+			return game.isOver() ? GAME_OVER : AWAITING_MOVE;
+
+		case GAME_OVER:
+			metrics.gameFinished(game.result());
+			recordJournal(SessionJournal.END);
+			recordGame();
+			reportResult();
+
+			return AWAITING_DECISION;
+
+		case AWAITING_DECISION:
+			return awaitDecision();
+
+		default:
+			return FINISHED;
+		}
+	}
+
+	/**
+	 * Determine como o jogo terminou e alerte o usurio.
+	 */
+	private void reportResult() throws IOException {
+		String command = "";
 
-		// Determine como o jogo terminou e alerte o usurio.
 		switch (game.result()) {
 		// Jogador venceu.
 		case 1:
 			System.out.println("O jogador venceu o jogo.");
 			// "#P" - o jogador venceu o jogo
-			output.writeBytes("#P\n");
+			command = "#P\n";
 			break;
 		// Computador ganhou.
 		case 2:
 			System.out.println("O computador ganhou o jogo.");
 			// "#C" - o computador venceu o jogo
-			output.writeBytes("#C\n");
+			command = "#C\n";
 			break;
 		// Jogo empatou.
 		case 3:
 			System.out.println("O jogo est empatado.");
 			// "#T" - o jogo est empatado
-			output.writeBytes("#T\n");
+			command = "#T\n";
 			break;
 		}
 
-		// Verifique se o usurio gostaria de jogar novamente.
+		// No protocolo binrio, o resultado vai no byte de estado do quadro final.
+		if (binary) {
+			BinaryProtocol.encodeFrame(game, game.result(), frame, 0);
+			output.write(frame);
+		}
+
+		else {
+			output.writeBytes(command);
+		}
+	}
+
+	/**
+	 * Verifique se o usurio gostaria de jogar novamente. Retorna NEW_GAME ou
+	 * FINISHED.
+	 */
+	private int awaitDecision() throws IOException {
 		System.out.println("Determinando se o usurio gostaria de jogar outro jogo...");
 
 		String decision = "";
 
 		while (!decision.equals("#NG") && !decision.equals("#CG")) {
-			decision = input.readLine();
+			decision = readDecision();
+
+			if (resumed) {
+				return resumedState();
+			}
 		}
 
 		// Se aplicvel, reinicie o jogo para o usurio.
 		if (decision.equals("#NG")) {
 			System.out.println("O usurio gostaria de jogar outro jogo.");
-			this.start();
+			return NEW_GAME;
 		}
 
-		// Caso contrrio, apague os fluxos e volte ao servidor.
-		else {
-			System.out.println("O usurio NO gostaria de jogar outro jogo.");
-			input.close();
-			output.close();
+		System.out.println("O usurio NO gostaria de jogar outro jogo.");
+		closedByUser = true;
+		return FINISHED;
+	}
+
+	/**
+	 * Troca o jogo desta conexo pelo da sesso com o token enviado pelo cliente
+	 * depois de RESUME, se ela existir e estiver sem conexo. A sesso aberta com
+	 * esta conexo  encerrada.
+	 */
+	private void resume(String command) {
+		SessionJournal.Entry entry = null;
+
+		if (journalEntry != null) {
+			try {
+				entry = journal.claim(Long.parseUnsignedLong(command.substring(RESUME.length()), 16));
+			}
+
+			catch (NumberFormatException e) {
+				entry = null;
+			}
+		}
+
+		if (entry == null) {
+			System.out.println("O usurio tentou retomar uma sesso que no existe.");
+			return;
+		}
+
+		System.out.println("O usurio retomou a sesso " + command.substring(RESUME.length()) + ".");
+
+		journal.close(journalEntry);
+		journalEntry = entry;
+		journal.restore(entry, game);
+		timings = entry.getTimings();
+
+		// Uma sesso recuperada de um arquivo anterior no tem os tempos: eles contam
+		// a partir de agora.
+		if (!timings.isStarted()) {
+			timings.start();
+		}
+		broadcast();
+		resumed = true;
+	}
+
+	/**
+	 * Retorna o estado em que a sesso retomada continua. Se o jogo j tinha
+	 * terminado, reenvia o resultado.
+	 */
+	private int resumedState() throws IOException {
+		resumed = false;
+
+		if (!game.isOver()) {
+			return (journalEntry.getNextTurn() == game.getCOMPUTER_TURN()) ? COMPUTER_THINKING : AWAITING_MOVE;
+		}
+
+		// O servidor pode ter cado antes de registrar o fim do jogo.
+		if (journalEntry.getType() != SessionJournal.END) {
+			return GAME_OVER;
+		}
+
+		reportResult();
+
+		return AWAITING_DECISION;
+	}
+
+	/**
+	 * Envia o estado do jogo aos espectadores, se houver uma transmisso.
+	 */
+	private void broadcast() {
+		if (broadcast != null) {
+			broadcast.publish(game);
+		}
+	}
+
+	/**
+	 * Registra o jogo no registro de jogos, se houver um.
+	 */
+	private void recordGame() {
+		if (gameLog != null) {
+			gameLog.append(game, timings);
+		}
+	}
+
+	/**
+	 * Registra o estado do jogo no dirio, se houver um.
+	 */
+	private void recordJournal(int type) {
+		if (journalEntry != null) {
+			journal.record(journalEntry, type, game);
 		}
 	}
 
@@ -103,38 +517,209 @@ public class ServerGame {
 		game.setWhoseTurn(game.getPLAYER_TURN());
 
 		int userMove = -1;
+		long prompted = System.nanoTime();
 
 		// Pea ao usurio a sua jogada at que ele ou ela insira uma jogada vlida.
 		while (!game.legalMove(userMove)) {
-			output.writeBytes(game.drawBoard());
-
-			// Obtenha o movimento desejado do usurio.
-			try {
-				userMove = scanner.nextInt();
+			if (binary) {
+				BinaryProtocol.encodeFrame(game, BinaryProtocol.YOUR_MOVE, frame, 0);
+				output.write(frame);
 			}
 
-			// Se o usurio digitar um valor noInt, defina seu movimento igual a -1 (para
-			// forar a reinsero).
-			// Redefina o scanner para evitar loop infinito.
-			catch (InputMismatchException e) {
-				userMove = -1;
-				scanner = new Scanner(input);
+			else {
+				boardEncoder.writeTo(game, output);
 			}
 
-			// Existem graciosamente se o usurio fechar a janela ou o jogo terminar de
-			// repente.
-			catch (NoSuchElementException e) {
-				System.err.println("O jogo foi encerrado pelo usurio.");
+			// Obtenha o movimento desejado do usurio. Se o usurio digitar um valor que
+			// no  uma jogada, o movimento  -1 (para forar a reinsero).
+			userMove = readMove();
+
+			if (resumed) {
+				return;
 			}
 		}
 
 		// Faa a jogada legal do usurio.
 		game.placePiece(game.getPLAYER_TURN(), userMove);
+		metrics.playerMoved(System.nanoTime() - prompted);
+		timings.playerMoved(System.nanoTime() - prompted);
+		recordJournal(SessionJournal.MOVE);
+		broadcast();
+	}
+
+	/**
+	 * L a prxima jogada do usurio, ou -1 se o que ele enviou no for uma
+	 * jogada. Se o primeiro byte da sesso for BinaryProtocol.HELLO, responde ao
+	 * pedido e tambm retorna -1, para que o quadro seja reenviado no protocolo
+	 * escolhido.
+	 */
+	private int readMove() throws IOException {
+		awaitInput();
+
+		if (!negotiated) {
+			negotiated = true;
+			input.mark(1);
+
+			if (input.read() == BinaryProtocol.HELLO) {
+				binary = BinaryProtocol.supports(game);
+				output.write(BinaryProtocol.reply(game));
+				return -1;
+			}
+
+			input.reset();
+		}
+
+		if (binary) {
+			int move = read();
+
+			return (move < game.getCells()) ? move : -1;
+		}
+
+		String move = readToken();
+
+		if (move.startsWith(RESUME)) {
+			resume(move);
+			return -1;
+		}
+
+		// Aceite apenas nmeros decimais que caibam em um int.
+		if (move.length() > 9) {
+			return -1;
+		}
+
+		int value = 0;
+
+		for (int i = 0; i < move.length(); i++) {
+			char digit = move.charAt(i);
+
+			if (digit < '0' || digit > '9') {
+				return -1;
+			}
+
+			value = value * 10 + (digit - '0');
+		}
+
+		return value;
+	}
+
+	/**
+	 * L o prximo comando do usurio depois de um jogo, no formato do protocolo
+	 * de texto ("#NG" ou "#CG"). Qualquer outro valor  ignorado por quem chama.
+	 */
+	private String readDecision() throws IOException {
+		awaitInput();
+
+		if (!binary) {
+			String decision = readToken();
+
+			if (decision.startsWith(RESUME)) {
+				resume(decision);
+			}
+
+			return decision;
+		}
+
+		switch (read()) {
+		case BinaryProtocol.NEW_GAME:
+			return "#NG";
+		case BinaryProtocol.CLOSE_GAME:
+			return "#CG";
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * Chamado antes de cada leitura de um comando, que  quando a vez passa ao
+	 * cliente: envia o que estiver no buffer de sada. Se o cliente j tiver
+	 * enviado o prximo comando junto com o anterior, a resposta continua no
+	 * buffer e vai junto com a prxima, em uma s escrita no socket.
+	 *
+	 * As quebras de linha que sobraram do comando anterior (o "\n" extra da GUI,
+	 * ou o "\n" de "\r\n") no contam como comando: elas so descartadas antes,
+	 * seno a resposta ficaria no buffer enquanto o cliente espera por ela.
+	 */
+	private void awaitInput() throws IOException {
+		if (!binary) {
+			while (input.ready()) {
+				input.mark(1);
+
+				if (input.read() > ' ') {
+					input.reset();
+					break;
+				}
+			}
+		}
+
+		if (!input.ready()) {
+			output.flush();
+		}
+	}
+
+	/**
+	 * L a prxima palavra do protocolo de texto, ignorando os espaos e quebras
+	 * de linha em volta dela.
+	 */
+	private String readToken() throws IOException {
+		int c = read();
+
+		while (c <= ' ') {
+			c = read();
+		}
+
+		token.setLength(0);
+
+		while (c > ' ') {
+			token.append((char) c);
+
+			// O fim da entrada tambm termina a palavra.
+			c = input.read();
+		}
+
+		return token.toString();
+	}
+
+	/**
+	 * L um caractere do usurio. Lana NoSuchElementException se a conexo
+	 * tiver sido encerrada, assim como o Scanner usado antes.
+	 */
+	private int read() throws IOException {
+		int c = input.read();
+
+		if (c < 0) {
+			throw new NoSuchElementException();
+		}
+
+		return c;
 	}
 
 	// Execute a vez do computador.
-	public void doComputerTurn() throws CloneNotSupportedException {
+	public void doComputerTurn() throws IOException {
 		game.setWhoseTurn(game.getCOMPUTER_TURN());
-		game.computerMove();
+
+		long start = System.nanoTime();
+		int level = 0;
+
+		// O agendador registra os ns das buscas que faz.
+		if (scheduler == null) {
+			game.computerMove();
+			metrics.searched(game.getSearchStrategy().getNodeCount());
+		}
+
+		else {
+			try {
+				level = scheduler.play(game, start + moveDeadline * 1000000L);
+			}
+
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("A jogada do computador foi interrompida.");
+			}
+		}
+
+		metrics.computerMoved(System.nanoTime() - start);
+		timings.computerMoved(System.nanoTime() - start, level);
+		recordJournal(SessionJournal.MOVE);
+		broadcast();
 	}
 }
\ No newline at end of file
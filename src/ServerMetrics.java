@@ -0,0 +1,327 @@
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * As mtricas do servidor: sesses, jogos, resultados, tempos das jogadas,
+ * ns buscados e bytes trocados com os clientes. Todos os contadores so
+ * LongAdder, ento registrar um evento custa um incremento sem disputa entre
+ * threads, e as mtricas podem ficar sempre ligadas.
+ *
+ * As mtricas podem ser lidas por JMX (veja ServerMetricsMBean) e, com
+ * startHttp (), em texto no formato do Prometheus em /metrics.
+ */
+public class ServerMetrics implements ServerMetricsMBean {
+	/**
+	 * O nome com que as mtricas so publicadas por JMX.
+	 */
+	public static final String OBJECT_NAME = "jogodavelha:type=ServerMetrics";
+
+	private final LongAdder activeSessions = new LongAdder();
+	private final LongAdder totalSessions = new LongAdder();
+	private final LongAdder gamesStarted = new LongAdder();
+	private final LongAdder gamesFinished = new LongAdder();
+
+	/**
+	 * Quantos jogos terminaram com cada resultado ("#P", "#C" e "#T").
+	 */
+	private final LongAdder playerWins = new LongAdder();
+	private final LongAdder computerWins = new LongAdder();
+	private final LongAdder ties = new LongAdder();
+
+	private final LongAdder searchNodes = new LongAdder();
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+
+	/**
+	 * Quanto tempo o cliente esperou por cada jogada do computador e quanto tempo
+	 * o usurio levou para enviar cada jogada sua, a partir do envio do quadro.
+	 */
+	private final LatencyHistogram computerMoveTime = new LatencyHistogram();
+	private final LatencyHistogram thinkTime = new LatencyHistogram();
+
+	public void sessionOpened() {
+		activeSessions.increment();
+		totalSessions.increment();
+	}
+
+	public void sessionClosed() {
+		activeSessions.decrement();
+	}
+
+	public void gameStarted() {
+		gamesStarted.increment();
+	}
+
+	/**
+	 * Registra o fim de um jogo com o resultado no formato de JogoDaVelha.result
+	 * ().
+	 */
+	public void gameFinished(int result) {
+		gamesFinished.increment();
+
+		switch (result) {
+		case 1:
+			playerWins.increment();
+			break;
+		case 2:
+			computerWins.increment();
+			break;
+		default:
+			ties.increment();
+			break;
+		}
+	}
+
+	/**
+	 * Registra quanto tempo, em nanossegundos, uma jogada do computador levou.
+	 */
+	public void computerMoved(long nanos) {
+		computerMoveTime.record(nanos);
+	}
+
+	/**
+	 * Registra quanto tempo, em nanossegundos, o usurio levou para jogar.
+	 */
+	public void playerMoved(long nanos) {
+		thinkTime.record(nanos);
+	}
+
+	public void searched(long nodes) {
+		searchNodes.add(nodes);
+	}
+
+	public void received(long bytes) {
+		bytesIn.add(bytes);
+	}
+
+	public void sent(long bytes) {
+		bytesOut.add(bytes);
+	}
+
+	/**
+	 * Retorna um fluxo que conta em bytesIn os bytes lidos de in.
+	 */
+	public InputStream countingInput(InputStream in) {
+		return new FilterInputStream(in) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+
+				if (b >= 0) {
+					received(1);
+				}
+
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int n = super.read(b, off, len);
+
+				if (n > 0) {
+					received(n);
+				}
+
+				return n;
+			}
+		};
+	}
+
+	/**
+	 * Retorna um fluxo que conta em bytesOut os bytes escritos em out.
+	 */
+	public OutputStream countingOutput(OutputStream out) {
+		return new FilterOutputStream(out) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				sent(1);
+			}
+
+			// O FilterOutputStream escreveria um byte de cada vez.
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				sent(len);
+			}
+		};
+	}
+
+	/**
+	 * Publica as mtricas por JMX, com o nome OBJECT_NAME.
+	 */
+	public void register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/**
+	 * Atende pedidos HTTP de /metrics na porta indicada, s a partir da prpria
+	 * mquina, com as mtricas em texto.
+	 */
+	public HttpServer startHttp(int port) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+		server.createContext("/metrics", exchange -> {
+			byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+			exchange.sendResponseHeaders(200, body.length);
+
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+
+		server.start();
+
+		return server;
+	}
+
+	/**
+	 * Retorna as mtricas no formato de texto do Prometheus.
+	 */
+	public String toText() {
+		StringBuilder text = new StringBuilder();
+
+		gauge(text, "jogodavelha_active_sessions", getActiveSessions());
+		counter(text, "jogodavelha_sessions_total", getTotalSessions());
+		counter(text, "jogodavelha_games_started_total", getGamesStarted());
+		counter(text, "jogodavelha_games_finished_total", getGamesFinished());
+
+		text.append("# TYPE jogodavelha_game_results_total counter\n");
+		text.append("jogodavelha_game_results_total{result=\"player\"} ").append(getPlayerWins()).append('\n');
+		text.append("jogodavelha_game_results_total{result=\"computer\"} ").append(getComputerWins()).append('\n');
+		text.append("jogodavelha_game_results_total{result=\"tie\"} ").append(getTies()).append('\n');
+
+		counter(text, "jogodavelha_search_nodes_total", getSearchNodes());
+		counter(text, "jogodavelha_bytes_in_total", getBytesIn());
+		counter(text, "jogodavelha_bytes_out_total", getBytesOut());
+
+		histogram(text, "jogodavelha_computer_move_seconds", computerMoveTime);
+		histogram(text, "jogodavelha_think_time_seconds", thinkTime);
+
+		return text.toString();
+	}
+
+	private static void gauge(StringBuilder text, String name, long value) {
+		text.append("# TYPE ").append(name).append(" gauge\n");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void counter(StringBuilder text, String name, long value) {
+		text.append("# TYPE ").append(name).append(" counter\n");
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void histogram(StringBuilder text, String name, LatencyHistogram histogram) {
+		long count = 0;
+
+		text.append("# TYPE ").append(name).append(" histogram\n");
+
+		for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+			count += histogram.getBucketCount(i);
+			text.append(name).append("_bucket{le=\"").append(LatencyHistogram.getBucketLimit(i) / 1e6).append("\"} ")
+					.append(count).append('\n');
+		}
+
+		text.append(name).append("_bucket{le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+		text.append(name).append("_sum ").append(histogram.getSum() / 1e9).append('\n');
+		text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+	}
+
+	public long getActiveSessions() {
+		return activeSessions.sum();
+	}
+
+	public long getTotalSessions() {
+		return totalSessions.sum();
+	}
+
+	public long getGamesStarted() {
+		return gamesStarted.sum();
+	}
+
+	public long getGamesFinished() {
+		return gamesFinished.sum();
+	}
+
+	public long getPlayerWins() {
+		return playerWins.sum();
+	}
+
+	public long getComputerWins() {
+		return computerWins.sum();
+	}
+
+	public long getTies() {
+		return ties.sum();
+	}
+
+	public long getSearchNodes() {
+		return searchNodes.sum();
+	}
+
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+
+	public long getComputerMoveCount() {
+		return computerMoveTime.getCount();
+	}
+
+	public double getComputerMoveMeanMillis() {
+		return computerMoveTime.getMeanMillis();
+	}
+
+	public double getComputerMoveP99Millis() {
+		return computerMoveTime.getPercentileMillis(99);
+	}
+
+	public double getComputerMoveMaxMillis() {
+		return computerMoveTime.getMaxMillis();
+	}
+
+	public long getThinkTimeCount() {
+		return thinkTime.getCount();
+	}
+
+	public double getThinkTimeMeanMillis() {
+		return thinkTime.getMeanMillis();
+	}
+
+	public double getThinkTimeP99Millis() {
+		return thinkTime.getPercentileMillis(99);
+	}
+
+	public double getThinkTimeMaxMillis() {
+		return thinkTime.getMaxMillis();
+	}
+
+	/**
+	 * Retornam os histogramas completos, com todas as faixas.
+	 */
+	public LatencyHistogram getComputerMoveTime() {
+		return computerMoveTime;
+	}
+
+	public LatencyHistogram getThinkTime() {
+		return thinkTime;
+	}
+}
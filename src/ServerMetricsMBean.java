@@ -0,0 +1,41 @@
+/**
+ * Os atributos de ServerMetrics publicados por JMX, em
+ * "jogodavelha:type=ServerMetrics". Os tempos so em milissegundos.
+ */
+public interface ServerMetricsMBean {
+	long getActiveSessions();
+
+	long getTotalSessions();
+
+	long getGamesStarted();
+
+	long getGamesFinished();
+
+	long getPlayerWins();
+
+	long getComputerWins();
+
+	long getTies();
+
+	long getSearchNodes();
+
+	long getBytesIn();
+
+	long getBytesOut();
+
+	long getComputerMoveCount();
+
+	double getComputerMoveMeanMillis();
+
+	double getComputerMoveP99Millis();
+
+	double getComputerMoveMaxMillis();
+
+	long getThinkTimeCount();
+
+	double getThinkTimeMeanMillis();
+
+	double getThinkTimeP99Millis();
+
+	double getThinkTimeMaxMillis();
+}
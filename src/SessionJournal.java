@@ -0,0 +1,652 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Dirio das sesses do servidor em um arquivo mapeado na memria, para que os
+ * jogos em andamento sobrevivam  queda do processo.
+ *
+ * Cada sesso tem um token. O incio e o fim de cada jogo, cada jogada e o
+ * encerramento da sesso acrescentam ao arquivo um registro de RECORD_SIZE
+ * bytes com o estado inteiro do jogo (as jogadas em ordem, quem comeou e quem
+ * joga a seguir), ento o ltimo registro de um token basta para reconstruir o
+ * seu jogo, com as jogadas na ordem em que foram feitas. Por isso o dirio s
+ * aceita grades que cabem em um bitboard.
+ *
+ * Escrever um registro no cria nenhum objeto e no espera o disco: a posio
+ * no arquivo  reservada com um incremento atmico e os bytes vo direto para
+ * a memria mapeada, que o sistema operacional grava mesmo se o processo cair.
+ * Uma thread  parte fora a gravao no disco a cada syncMillis milissegundos,
+ * para sobreviver tambm  queda da mquina. Cada registro termina com uma soma
+ * de verificao, ento registros incompletos so ignorados na leitura.
+ *
+ * Quando o arquivo enche, ele  substitudo por outro que contm s o ltimo
+ * registro de cada sesso ainda aberta. A thread do dirio cria e mapeia esse
+ * outro arquivo de antemo, quando o atual passa da metade, ento a troca s
+ * copia os registros na memria; gravar o arquivo novo no disco e dar a ele o
+ * nome do dirio tambm fica com ela. At l, o arquivo novo tem o nome do
+ * dirio seguido de NEXT_SUFFIX, e a abertura l os dois. Se uma troca falhar,
+ * o dirio para de escrever: os jogos continuam, s deixam de poder ser
+ * retomados depois de uma queda. Ao abrir o dirio, as sesses que no
+ * foram encerradas no arquivo anterior ficam  espera de um cliente que as
+ * retome com o seu token (veja claim ()). O mesmo acontece com as sesses cuja
+ * conexo cai no meio do jogo (veja detach ()). Uma sesso que fica sem conexo
+ * por mais de ttlMillis milissegundos no pode mais ser retomada e sai do
+ * dirio na prxima troca de arquivo.
+ */
+public class SessionJournal {
+	/**
+	 * O tamanho de um registro: o token (8 bytes), o tipo, quem comeou, quem joga
+	 * a seguir e o nmero de jogadas (1 byte cada), as posies das jogadas em
+	 * ordem (1 byte cada, em MOVE_WORDS longs) e a soma de verificao (4 bytes).
+	 */
+	public static final int RECORD_SIZE = 48;
+
+	/**
+	 * Quantos longs guardam as jogadas: um byte por posio de um bitboard.
+	 */
+	private static final int MOVE_WORDS = Integer.SIZE / Long.BYTES;
+
+	/**
+	 * O cabealho do arquivo: MAGIC, VERSION, as dimenses da grade e
+	 * RECORD_SIZE, um int cada.
+	 */
+	private static final int HEADER_SIZE = 32;
+	private static final int MAGIC = 0x4A44564A;
+	private static final int VERSION = 2;
+
+	/**
+	 * O sufixo do prximo arquivo, enquanto ele no substitui o atual.
+	 */
+	private static final String NEXT_SUFFIX = ".next";
+
+	/**
+	 * Os tipos de registro.
+	 */
+	public static final int START = 1;
+	public static final int MOVE = 2;
+	public static final int END = 3;
+	public static final int CLOSE = 4;
+
+	/**
+	 * O estado de uma sesso no dirio: o token e o seu ltimo registro.
+	 */
+	public static final class Entry {
+		private final long token;
+		private int type;
+		private int firstTurn;
+		private int nextTurn;
+		private int moveCount;
+		private final long[] moves = new long[MOVE_WORDS];
+
+		/**
+		 * Se a sesso tem uma conexo e, se no tiver, desde quando (em
+		 * milissegundos). As que no tm podem ser retomadas at expirarem.
+		 */
+		private boolean attached;
+		private long detachedAt;
+
+		/**
+		 * Os tempos do jogo da sesso, que passam para a conexo que a retomar. S
+		 * ficam na memria: uma sesso recuperada de um arquivo anterior comea sem
+		 * eles.
+		 */
+		private final GameRecordLog.Timings timings = new GameRecordLog.Timings();
+
+		Entry(long token) {
+			this.token = token;
+		}
+
+		public long getToken() {
+			return token;
+		}
+
+		/**
+		 * Retorna o tipo do ltimo registro: START, MOVE ou END.
+		 */
+		public int getType() {
+			return type;
+		}
+
+		/**
+		 * Retorna de quem  a prxima jogada no formato de JogoDaVelha ({player}
+		 * _TURN), ou o valor de ningum se o jogo terminou.
+		 */
+		public int getNextTurn() {
+			return nextTurn;
+		}
+
+		public GameRecordLog.Timings getTimings() {
+			return timings;
+		}
+	}
+
+	private final Path path;
+	private final Path nextPath;
+	private final int boardSize;
+	private final int winLength;
+	private final long ttlMillis;
+
+	/**
+	 * Quantos registros cabem no arquivo atual, o arquivo mapeado e o prximo
+	 * registro livre. O mapa s  trocado com o travamento exclusivo.
+	 */
+	private volatile int capacity;
+	private volatile MappedByteBuffer buffer;
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * O prximo arquivo, j mapeado, e quantos registros cabem nele, ou null; e se
+	 * o arquivo atual ainda  o prximo,  espera de ir para o disco e de ser
+	 * renomeado. S so usados com o monitor de files.
+	 */
+	private final Object files = new Object();
+	private MappedByteBuffer spare = null;
+	private int spareCapacity;
+	private boolean renamePending = false;
+
+	/**
+	 * A thread do dirio e se uma troca de arquivo falhou, o que desativa a
+	 * escrita.
+	 */
+	private Thread maintainer;
+	private volatile boolean failed = false;
+
+	/**
+	 * Os registros so escritos com o travamento compartilhado; a troca de arquivo
+	 * usa o exclusivo.
+	 */
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * As sesses abertas, com ou sem conexo.
+	 */
+	private final Map<Long, Entry> live = new ConcurrentHashMap<>();
+
+	private final SecureRandom random = new SecureRandom();
+
+	private SessionJournal(Path path, int capacity, int boardSize, int winLength, long ttlMillis) {
+		this.path = path;
+		this.nextPath = path.resolveSibling(path.getFileName() + NEXT_SUFFIX);
+		this.capacity = capacity;
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+		this.ttlMillis = ttlMillis;
+	}
+
+	/**
+	 * Abre o dirio no arquivo indicado, com espao para capacity registros, para
+	 * jogos em uma grade boardSize x boardSize. As sesses abertas no arquivo
+	 * anterior, se houver um com as mesmas dimenses, ficam  espera de serem
+	 * retomadas. Com syncMillis maior que zero, o arquivo  gravado no disco a
+	 * cada syncMillis milissegundos. Com ttlMillis maior que zero, as sesses sem
+	 * conexo expiram depois de ttlMillis milissegundos.
+	 */
+	public static SessionJournal open(Path path, int capacity, int boardSize, int winLength, long syncMillis,
+			long ttlMillis) throws IOException {
+		SessionJournal journal = new SessionJournal(path, capacity, boardSize, winLength, ttlMillis);
+
+		// O prximo arquivo, se existir, tem os registros mais recentes.
+		for (Path file : new Path[] { journal.path, journal.nextPath }) {
+			if (Files.exists(file)) {
+				journal.recover(file);
+			}
+		}
+
+		journal.roll();
+
+		synchronized (journal.files) {
+			journal.publish();
+		}
+
+		journal.maintainer = new Thread(() -> journal.maintain(syncMillis), "diario");
+		journal.maintainer.setDaemon(true);
+		journal.maintainer.start();
+
+		return journal;
+	}
+
+	/**
+	 * Retorna true se os jogos puderem ser guardados no dirio.
+	 */
+	public static boolean supports(JogoDaVelha game) {
+		return game.isBitboard();
+	}
+
+	/**
+	 * Abre uma sesso com um token novo, ligada  conexo de quem a pede.
+	 */
+	public Entry open() {
+		long token;
+
+		do {
+			token = random.nextLong();
+		} while (token == 0 || live.containsKey(token));
+
+		Entry entry = new Entry(token);
+		entry.attached = true;
+		live.put(token, entry);
+
+		return entry;
+	}
+
+	/**
+	 * Retoma a sesso sem conexo que tem o token indicado e a liga a quem a pede.
+	 * Retorna null se no houver uma, ou se ela tiver expirado.
+	 */
+	public Entry claim(long token) {
+		Entry entry = live.get(token);
+
+		if (entry == null) {
+			return null;
+		}
+
+		synchronized (entry) {
+			if (entry.attached || expired(entry, System.currentTimeMillis())) {
+				return null;
+			}
+
+			entry.attached = true;
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Desliga a sesso da sua conexo, que caiu. Ela continua aberta e pode ser
+	 * retomada com claim () at expirar.
+	 */
+	public void detach(Entry entry) {
+		synchronized (entry) {
+			entry.attached = false;
+			entry.detachedAt = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Retorna true se a sesso est sem conexo h mais de ttlMillis
+	 * milissegundos. Deve ser chamado com o monitor da sesso.
+	 */
+	private boolean expired(Entry entry, long now) {
+		return !entry.attached && ttlMillis > 0 && now - entry.detachedAt > ttlMillis;
+	}
+
+	/**
+	 * Registra o estado atual do jogo da sesso: START ao comear um jogo, MOVE
+	 * depois de cada jogada e END ao fim do jogo.
+	 */
+	public void record(Entry entry, int type, JogoDaVelha game) {
+		int nextTurn;
+
+		if (type == START) {
+			nextTurn = game.getFirstTurn();
+		}
+
+		else if (type == END || game.isOver() || game.getNumMoves() == 0) {
+			nextTurn = 0;
+		}
+
+		// Depois de uma jogada, a vez  do outro lado.
+		else {
+			nextTurn = (game.getWhoseTurn() == game.getPLAYER_TURN()) ? game.getCOMPUTER_TURN()
+					: game.getPLAYER_TURN();
+		}
+
+		append(entry, type, nextTurn, game);
+	}
+
+	/**
+	 * Encerra a sesso: ela no ser mais retomada.
+	 */
+	public void close(Entry entry) {
+		append(entry, CLOSE, entry.nextTurn, null);
+		live.remove(entry.token);
+	}
+
+	/**
+	 * Coloca em game o jogo guardado na sesso, refazendo as jogadas na ordem em
+	 * que foram feitas.
+	 */
+	public void restore(Entry entry, JogoDaVelha game) {
+		game.reset();
+		game.setFirstTurn(entry.firstTurn);
+
+		int turn = entry.firstTurn;
+
+		for (int i = 0; i < entry.moveCount; i++) {
+			game.placePiece(turn, (int) (entry.moves[i >>> 3] >>> ((i & 7) * 8)) & 0xFF);
+			turn = (turn == game.getPLAYER_TURN()) ? game.getCOMPUTER_TURN() : game.getPLAYER_TURN();
+		}
+
+		game.setWhoseTurn(entry.nextTurn);
+	}
+
+	/**
+	 * Retorna quantas sesses esto abertas, com ou sem conexo.
+	 */
+	public int getOpenSessions() {
+		return live.size();
+	}
+
+	/**
+	 * Retorna quantas sesses sem conexo podem ser retomadas.
+	 */
+	public int getDetachedSessions() {
+		int detached = 0;
+
+		for (Entry entry : live.values()) {
+			synchronized (entry) {
+				detached += entry.attached ? 0 : 1;
+			}
+		}
+
+		return detached;
+	}
+
+	/**
+	 * Acrescenta o registro da sesso, com as jogadas de game (ou as que ela j
+	 * tinha, se game for null).
+	 */
+	private void append(Entry entry, int type, int nextTurn, JogoDaVelha game) {
+		long stamp = lock.readLock();
+
+		try {
+			set(entry, type, nextTurn, game);
+
+			if (failed) {
+				return;
+			}
+
+			int index = next.getAndIncrement();
+
+			if (index < capacity) {
+				write(buffer, index, entry);
+
+				// Passou da metade:  hora de preparar o prximo arquivo.
+				if (index == capacity / 2) {
+					LockSupport.unpark(maintainer);
+				}
+
+				return;
+			}
+		}
+
+		finally {
+			lock.unlockRead(stamp);
+		}
+
+		// O arquivo encheu: troque-o pelo prximo, com o ltimo registro de cada
+		// sesso, que j inclui este.
+		stamp = lock.writeLock();
+
+		try {
+			set(entry, type, nextTurn, game);
+
+			if (failed) {
+				return;
+			}
+
+			if (next.get() >= capacity) {
+				roll();
+			}
+
+			else {
+				write(buffer, next.getAndIncrement(), entry);
+			}
+		}
+
+		// Sem o dirio, o jogo continua; s deixa de poder ser retomado. Tentar de
+		// novo a cada jogada s atrasaria todas as sesses.
+		catch (IOException e) {
+			failed = true;
+			System.err.println("O dirio de sesses " + path + " foi desativado: " + e);
+		}
+
+		finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	private static void set(Entry entry, int type, int nextTurn, JogoDaVelha game) {
+		entry.type = type;
+		entry.nextTurn = nextTurn;
+
+		if (game == null) {
+			return;
+		}
+
+		entry.firstTurn = game.getFirstTurn();
+		entry.moveCount = game.getNumMoves();
+		Arrays.fill(entry.moves, 0);
+
+		for (int i = 0; i < entry.moveCount; i++) {
+			entry.moves[i >>> 3] |= (long) game.getMove(i) << ((i & 7) * 8);
+		}
+	}
+
+	/**
+	 * Escreve o registro de uma sesso na posio indicada, deixando a soma de
+	 * verificao por ltimo.
+	 */
+	private static void write(MappedByteBuffer buffer, int index, Entry entry) {
+		int offset = HEADER_SIZE + index * RECORD_SIZE;
+		int meta = pack(entry);
+
+		buffer.putLong(offset, entry.token);
+		buffer.putInt(offset + 8, meta);
+
+		for (int i = 0; i < MOVE_WORDS; i++) {
+			buffer.putLong(offset + 12 + i * Long.BYTES, entry.moves[i]);
+		}
+
+		buffer.putInt(offset + RECORD_SIZE - 4, checksum(entry.token, meta, entry.moves));
+	}
+
+	private static int pack(Entry entry) {
+		return (entry.type & 0xFF) | (entry.firstTurn & 0xFF) << 8 | (entry.nextTurn & 0xFF) << 16
+				| (entry.moveCount & 0xFF) << 24;
+	}
+
+	private static int checksum(long token, int meta, long[] moves) {
+		long h = (token ^ MAGIC) * 0x9E3779B97F4A7C15L;
+		h = (h ^ meta) * 0xBF58476D1CE4E5B9L;
+
+		for (long word : moves) {
+			h = (h ^ word) * 0x94D049BB133111EBL;
+		}
+
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * L um arquivo anterior e guarda o ltimo registro de cada sesso que no foi
+	 * encerrada, sem conexo. Um arquivo de outra verso ou com outras dimenses 
+	 * ignorado.
+	 */
+	private void recover(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			if (size < HEADER_SIZE) {
+				return;
+			}
+
+			MappedByteBuffer old = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			if (old.getInt(0) != MAGIC || old.getInt(4) != VERSION || old.getInt(8) != boardSize
+					|| old.getInt(12) != winLength || old.getInt(16) != RECORD_SIZE) {
+				System.err.println("O dirio " + file + "  de outra verso ou grade e foi ignorado.");
+				return;
+			}
+
+			long records = (size - HEADER_SIZE) / RECORD_SIZE;
+			long now = System.currentTimeMillis();
+			long[] moves = new long[MOVE_WORDS];
+
+			// Registros incompletos podem estar em qualquer lugar, pois as sesses
+			// escrevem ao mesmo tempo: examine todos.
+			for (int i = 0; i < records; i++) {
+				int offset = HEADER_SIZE + i * RECORD_SIZE;
+				long token = old.getLong(offset);
+				int meta = old.getInt(offset + 8);
+
+				for (int j = 0; j < MOVE_WORDS; j++) {
+					moves[j] = old.getLong(offset + 12 + j * Long.BYTES);
+				}
+
+				if (token == 0 || old.getInt(offset + RECORD_SIZE - 4) != checksum(token, meta, moves)) {
+					continue;
+				}
+
+				int type = meta & 0xFF;
+
+				if (type == CLOSE) {
+					live.remove(token);
+					continue;
+				}
+
+				// As sesses recuperadas ficam sem conexo a partir de agora.
+				Entry entry = live.computeIfAbsent(token, Entry::new);
+				entry.type = type;
+				entry.firstTurn = (byte) (meta >>> 8);
+				entry.nextTurn = (byte) (meta >>> 16);
+				entry.moveCount = (meta >>> 24) & 0xFF;
+				entry.detachedAt = now;
+				System.arraycopy(moves, 0, entry.moves, 0, MOVE_WORDS);
+			}
+		}
+	}
+
+	/**
+	 * Passa a usar o prximo arquivo, com o ltimo registro de cada sesso aberta.
+	 * S escreve na memria mapeada; a thread do dirio grava o arquivo no disco e
+	 * o renomeia depois. Deve ser chamado com o travamento exclusivo (ou antes de o
+	 * dirio ser usado).
+	 */
+	private void roll() throws IOException {
+		long now = System.currentTimeMillis();
+
+		// As sesses expiradas no vo para o arquivo novo.
+		live.values().removeIf(entry -> {
+			synchronized (entry) {
+				return expired(entry, now);
+			}
+		});
+
+		synchronized (files) {
+			// Deixe sempre pelo menos metade do arquivo livre.
+			if (spare == null || spareCapacity < 2 * live.size() + 16) {
+				prepare();
+			}
+
+			int index = 0;
+
+			for (Entry entry : live.values()) {
+				write(spare, index++, entry);
+			}
+
+			buffer = spare;
+			capacity = spareCapacity;
+			next.set(index);
+			spare = null;
+			renamePending = true;
+		}
+
+		if (maintainer != null) {
+			LockSupport.unpark(maintainer);
+		}
+	}
+
+	/**
+	 * Cria e mapeia o prximo arquivo, s com o cabealho, com espao para pelo
+	 * menos o dobro das sesses abertas. Deve ser chamado com o monitor de files.
+	 */
+	private void prepare() throws IOException {
+		// O nome do prximo arquivo ainda  o do atual.
+		if (renamePending) {
+			publish();
+		}
+
+		int size = capacity;
+
+		while (size < 2 * live.size() + 16) {
+			size *= 2;
+		}
+
+		try (FileChannel channel = FileChannel.open(nextPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+					HEADER_SIZE + (long) size * RECORD_SIZE);
+
+			map.putInt(0, MAGIC);
+			map.putInt(4, VERSION);
+			map.putInt(8, boardSize);
+			map.putInt(12, winLength);
+			map.putInt(16, RECORD_SIZE);
+
+			spare = map;
+			spareCapacity = size;
+		}
+	}
+
+	/**
+	 * Grava no disco o arquivo atual, se ele ainda for o prximo, e s ento o pe
+	 * no lugar do anterior. Deve ser chamado com o monitor de files.
+	 */
+	private void publish() throws IOException {
+		if (!renamePending) {
+			return;
+		}
+
+		buffer.force();
+		Files.move(nextPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		renamePending = false;
+	}
+
+	/**
+	 * O trabalho da thread do dirio: renomeia o arquivo depois de cada troca,
+	 * prepara o prximo quando o atual passa da metade e, com syncMillis maior que
+	 * zero, grava o arquivo no disco a cada syncMillis milissegundos.
+	 */
+	private void maintain(long syncMillis) {
+		while (!failed) {
+			if (syncMillis > 0) {
+				LockSupport.parkNanos(this, syncMillis * 1000000L);
+			}
+
+			else {
+				LockSupport.park(this);
+			}
+
+			try {
+				synchronized (files) {
+					publish();
+
+					if (spare == null && next.get() >= capacity / 2) {
+						prepare();
+					}
+				}
+
+				if (syncMillis > 0) {
+					buffer.force();
+				}
+			}
+
+			catch (IOException e) {
+				failed = true;
+				System.err.println("O dirio de sesses " + path + " foi desativado: " + e);
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Os jogos em andamento que podem ser assistidos, cada um com a sua Broadcast,
+ * e a porta em que os espectadores se conectam.
+ *
+ * Um espectador se conecta  porta de serve () e envia uma linha com o nmero
+ * do jogo que quer assistir, ou uma linha vazia para o jogo em destaque (o mais
+ * recente ainda em andamento). A partir da s recebe: o quadro, no formato de
+ * drawBoard (), a cada jogada, seguido do resultado ao fim de cada jogo. A
+ * conexo  fechada quando a sesso assistida termina.
+ */
+public class Spectators {
+	/**
+	 * Quanto tempo, em milissegundos, o espectador tem para escolher o jogo.
+	 */
+	private static final int REQUEST_TIMEOUT = 10000;
+
+	private final AtomicLong nextId = new AtomicLong();
+	private final ConcurrentSkipListMap<Long, Broadcast> games = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Abre a transmisso de um novo jogo. Quem a abre deve fech-la com close ()
+	 * quando a sesso terminar.
+	 */
+	public Broadcast open() {
+		Broadcast broadcast = new Broadcast(nextId.incrementAndGet());
+
+		games.put(broadcast.getId(), broadcast);
+
+		return broadcast;
+	}
+
+	/**
+	 * Encerra a transmisso e a retira da lista de jogos.
+	 */
+	public void close(Broadcast broadcast) {
+		games.remove(broadcast.getId());
+		broadcast.close();
+	}
+
+	/**
+	 * Retorna a transmisso do jogo com o nmero indicado ou, com 0, a do jogo em
+	 * destaque. Retorna null se ela no existir.
+	 */
+	public Broadcast find(long id) {
+		if (id != 0) {
+			return games.get(id);
+		}
+
+		Map.Entry<Long, Broadcast> featured = games.lastEntry();
+
+		return (featured == null) ? null : featured.getValue();
+	}
+
+	/**
+	 * Aceita espectadores na porta indicada, cada um em uma thread do executor.
+	 * S retorna se a porta no puder ser aberta.
+	 */
+	public void serve(int port, ExecutorService executor) throws IOException {
+		try (ServerSocket welcomeSocket = new ServerSocket(port)) {
+			System.out.println("Os jogos podem ser assistidos na porta " + port + ".");
+
+			while (true) {
+				Socket connectionSocket = welcomeSocket.accept();
+
+				executor.execute(() -> watch(connectionSocket));
+			}
+		}
+	}
+
+	/**
+	 * L o jogo pedido pelo espectador e o transmite a ele.
+	 */
+	private void watch(Socket connectionSocket) {
+		try {
+			connectionSocket.setTcpNoDelay(true);
+			connectionSocket.setSoTimeout(REQUEST_TIMEOUT);
+
+			BufferedReader input = new BufferedReader(
+					new InputStreamReader(connectionSocket.getInputStream(), StandardCharsets.US_ASCII));
+			String request = input.readLine();
+			Broadcast broadcast = null;
+
+			try {
+				broadcast = (request == null) ? null : find(request.trim().isEmpty() ? 0 : Long.parseLong(request.trim()));
+			}
+
+			catch (NumberFormatException e) {
+				broadcast = null;
+			}
+
+			if (broadcast == null) {
+				connectionSocket.close();
+				return;
+			}
+
+			System.out.println("Um espectador de " + connectionSocket.getInetAddress() + " est assistindo ao jogo "
+					+ broadcast.getId() + ".");
+
+			broadcast.watch(connectionSocket);
+		}
+
+		// Um espectador que sai ou  desconectado no afeta o jogo.
+		catch (IOException e) {
+			try {
+				connectionSocket.close();
+			}
+
+			catch (IOException closing) {
+				System.err.println(closing);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		int viewers = 0;
+
+		for (Broadcast broadcast : games.values()) {
+			viewers += broadcast.getViewerCount();
+		}
+
+		return games.size() + " jogos transmitidos, " + viewers + " espectadores";
+	}
+}
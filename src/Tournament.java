@@ -0,0 +1,373 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Torneio entre buscas do computador, sem janela e sem servidor: cada par de
+ * buscas joga vrias vezes, e ao final so mostrados os jogos por segundo, os
+ * ns por segundo e a distribuio do tempo de cada jogada de cada busca, e as
+ * vitrias, empates e derrotas de cada uma contra cada outra.
+ *
+ * As buscas s sabem escolher a jogada do computador, ento cada jogo  jogado
+ * em dois JogoDaVelha espelhados, um para cada busca: em cada um, a busca dona
+ * dele  o computador e a outra  o jogador, e cada jogada  feita nos dois.
+ *
+ * Como as buscas so determinsticas, cada jogo comea com OPENING jogadas
+ * sorteadas, e cada abertura  jogada duas vezes, com cada busca comeando uma
+ * vez. Os jogos so divididos entre as threads de um ForkJoinPool; cada thread
+ * tem as suas prprias buscas, que no so seguras entre threads. A busca
+ * random recebe, a cada jogo, uma semente tirada de --seed e do nmero do jogo,
+ * ento os resultados no dependem de qual thread jogou cada jogo.
+ *
+ * Opes:
+ * --engines=ab,ab:4,id:100,...: as buscas, entre ab (alfa-beta at o fim do
+ * jogo), ab:D (alfa-beta at D jogadas  frente), id:MS (aprofundamento
+ * iterativo com MS milissegundos por jogada), par:D (alfa-beta paralelo at D
+ * jogadas  frente), minimax (o minimax original de bestGuess ()) e random
+ * (uma posio livre qualquer);
+ * --size=N e --win=K: a grade (padro 3 e 3);
+ * --games=G: quantas aberturas cada par joga, cada uma duas vezes (padro 100);
+ * --openings=P: quantas jogadas sorteadas abrem cada jogo (padro 2);
+ * --threads=N: quantas threads jogam (padro: uma por processador);
+ * --seed=S: a semente das aberturas.
+ */
+public class Tournament {
+	static int BOARD_SIZE = 3;
+	static int WIN_LENGTH = 3;
+	static String[] ENGINES = { "ab", "ab:4", "ab:2", "ab:1", "random" };
+	static int GAMES = 100;
+	static int OPENING = 2;
+	static int THREADS = Runtime.getRuntime().availableProcessors();
+	static long SEED = 1;
+
+	/**
+	 * O tamanho da tabela de transposio de cada busca.
+	 */
+	private static final int TABLE_SIZE = 1 << 14;
+
+	/**
+	 * Como criar cada busca, e as buscas de cada thread.
+	 */
+	private static List<Supplier<SearchStrategy>> factories = new ArrayList<>();
+	private static ThreadLocal<SearchStrategy[]> searches;
+
+	/**
+	 * O pool das buscas par:D, criado s se alguma for usada.
+	 */
+	private static ForkJoinPool searchPool = null;
+
+	/**
+	 * O tempo de cada jogada, as jogadas e os ns de cada busca.
+	 */
+	private static LatencyHistogram[] moveTimes;
+	private static LongAdder[] nodes;
+
+	/**
+	 * Os resultados de cada par, na posio (i * n + j) * 3 + r, do ponto de vista
+	 * da busca i contra a j: r  0 para vitria, 1 para empate e 2 para derrota.
+	 */
+	private static AtomicLongArray results;
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		parseArguments(args);
+
+		int n = ENGINES.length;
+
+		for (String engine : ENGINES) {
+			factories.add(parseEngine(engine));
+		}
+
+		searches = ThreadLocal.withInitial(() -> {
+			SearchStrategy[] engines = new SearchStrategy[n];
+
+			for (int i = 0; i < n; i++) {
+				engines[i] = factories.get(i).get();
+			}
+
+			return engines;
+		});
+
+		moveTimes = new LatencyHistogram[n];
+		nodes = new LongAdder[n];
+		results = new AtomicLongArray(n * n * 3);
+
+		for (int i = 0; i < n; i++) {
+			moveTimes[i] = new LatencyHistogram();
+			nodes[i] = new LongAdder();
+		}
+
+		// Cada jogo  um ndice: o par, a abertura e quem comea.
+		int pairs = n * (n - 1) / 2;
+		long games = 2L * pairs * GAMES;
+
+		System.out.println("Jogando " + games + " jogos em " + BOARD_SIZE + "x" + BOARD_SIZE + "/" + WIN_LENGTH
+				+ " entre " + n + " buscas, com " + THREADS + " threads...");
+
+		ForkJoinPool pool = new ForkJoinPool(THREADS);
+		long start = System.nanoTime();
+
+		try {
+			pool.submit(() -> IntStream.range(0, (int) games).parallel().forEach(Tournament::play)).get();
+		}
+
+		finally {
+			pool.shutdown();
+
+			if (searchPool != null) {
+				searchPool.shutdown();
+			}
+		}
+
+		report(games, System.nanoTime() - start);
+	}
+
+	/**
+	 * Retorna como criar a busca descrita por engine.
+	 */
+	static Supplier<SearchStrategy> parseEngine(String engine) {
+		String[] parts = engine.split(":", 2);
+		int parameter = (parts.length > 1) ? Integer.parseInt(parts[1]) : Integer.MAX_VALUE;
+
+		switch (parts[0]) {
+		case "ab":
+			return () -> new AlphaBetaSearch(parameter, new TranspositionTable(TABLE_SIZE));
+		case "id":
+			return () -> new IterativeDeepeningSearch(parameter, BOARD_SIZE * BOARD_SIZE,
+					new TranspositionTable(TABLE_SIZE));
+		case "par":
+			if (searchPool == null) {
+				searchPool = new ForkJoinPool(THREADS);
+			}
+
+			return () -> new ParallelSearch(searchPool, parameter, true);
+		case "minimax":
+			return () -> null;
+		case "random":
+			return RandomSearch::new;
+		default:
+			throw new IllegalArgumentException("Busca desconhecida: " + engine);
+		}
+	}
+
+	/**
+	 * Uma busca que escolhe qualquer posio livre, como referncia.
+	 */
+	private static final class RandomSearch implements SearchStrategy {
+		private final Random random = new Random(SEED);
+		private int[] moves = new int[0];
+
+		/**
+		 * Recomea a sequncia de sorteios com a semente indicada.
+		 */
+		void reseed(long seed) {
+			random.setSeed(seed);
+		}
+
+		public int bestMove(JogoDaVelha game) {
+			if (moves.length < game.getCells()) {
+				moves = new int[game.getCells()];
+			}
+
+			return moves[random.nextInt(game.legalMoves(moves))];
+		}
+
+		public long getNodeCount() {
+			return 1;
+		}
+	}
+
+	/**
+	 * Joga o jogo de nmero index.
+	 */
+	static void play(int index) {
+		int n = ENGINES.length;
+		int pair = index / (2 * GAMES);
+
+		// O par de nmero pair, na ordem (0, 1), (0, 2), ..., (1, 2), ...
+		int a = 0;
+
+		while (pair >= n - 1 - a) {
+			pair -= n - 1 - a;
+			a++;
+		}
+
+		int b = a + 1 + pair;
+		int[] engines = ((index & 1) == 0) ? new int[] { a, b } : new int[] { b, a };
+		SearchStrategy[] threadSearches = searches.get();
+
+		// A vista de cada busca: ela  o computador, e a outra, o jogador.
+		JogoDaVelha[] views = { new JogoDaVelha(BOARD_SIZE, WIN_LENGTH), new JogoDaVelha(BOARD_SIZE, WIN_LENGTH) };
+
+		views[0].setSearchStrategy(threadSearches[engines[0]]);
+		views[1].setSearchStrategy(threadSearches[engines[1]]);
+
+		// As buscas random sorteiam a partir do jogo, no do que a thread j jogou.
+		for (int engine : engines) {
+			if (threadSearches[engine] instanceof RandomSearch) {
+				((RandomSearch) threadSearches[engine]).reseed((SEED * 1000003L + index) * 31 + engine);
+			}
+		}
+
+		// A mesma abertura nos dois jogos do par, um com cada busca comeando.
+		Random random = new Random(SEED * 1000003L + (long) index / 2);
+		int[] legal = new int[views[0].getCells()];
+		int mover = 0;
+
+		for (int ply = 0; ply < OPENING && !views[0].isOver(); ply++) {
+			int count = views[mover].legalMoves(legal);
+
+			play(views, mover, legal[random.nextInt(count)]);
+			mover = 1 - mover;
+		}
+
+		while (!views[0].isOver()) {
+			JogoDaVelha own = views[mover];
+			SearchStrategy search = own.getSearchStrategy();
+			long start = System.nanoTime();
+
+			own.setWhoseTurn(own.getCOMPUTER_TURN());
+
+			int move = own.bestMove();
+
+			moveTimes[engines[mover]].record(System.nanoTime() - start);
+
+			if (search != null) {
+				nodes[engines[mover]].add(search.getNodeCount());
+			}
+
+			play(views, mover, move);
+			mover = 1 - mover;
+		}
+
+		// Na vista da busca 0, o computador  ela.
+		switch (views[0].result()) {
+		case 2:
+			count(engines[0], engines[1], 0);
+			break;
+		case 1:
+			count(engines[0], engines[1], 2);
+			break;
+		default:
+			count(engines[0], engines[1], 1);
+			break;
+		}
+	}
+
+	/**
+	 * Faz a jogada da busca mover nas duas vistas.
+	 */
+	private static void play(JogoDaVelha[] views, int mover, int move) {
+		views[mover].placePiece(views[mover].getCOMPUTER_TURN(), move);
+		views[1 - mover].placePiece(views[1 - mover].getPLAYER_TURN(), move);
+	}
+
+	/**
+	 * Conta o resultado r de i contra j, e o oposto de j contra i.
+	 */
+	private static void count(int i, int j, int r) {
+		int n = ENGINES.length;
+
+		results.incrementAndGet((i * n + j) * 3 + r);
+		results.incrementAndGet((j * n + i) * 3 + (2 - r));
+	}
+
+	static void report(long games, long elapsed) {
+		int n = ENGINES.length;
+		double seconds = elapsed / 1e9;
+		long totalNodes = 0;
+
+		for (LongAdder adder : nodes) {
+			totalNodes += adder.sum();
+		}
+
+		System.out.printf("%d jogos em %.2f s: %.1f jogos/s, %.0f ns/s%n", games, seconds, games / seconds,
+				totalNodes / seconds);
+
+		System.out.println();
+		System.out.println("Tempo de cada jogada (ms) e ns por segundo de busca:");
+
+		for (int i = 0; i < n; i++) {
+			LatencyHistogram times = moveTimes[i];
+			double searching = times.getSum() / 1e9;
+
+			System.out.printf("  %-10s %8d jogadas: p50 %.3f, p90 %.3f, p99 %.3f, mx. %.3f; %s ns/s%n", ENGINES[i],
+					times.getCount(), times.getPercentileMillis(50), times.getPercentileMillis(90),
+					times.getPercentileMillis(99), times.getMaxMillis(),
+					ENGINES[i].equals("minimax") ? "-" : String.format("%.0f", nodes[i].sum() / searching));
+		}
+
+		System.out.println();
+		System.out.println("Vitrias/empates/derrotas de cada linha contra cada coluna, e aproveitamento:");
+		System.out.printf("  %-10s", "");
+
+		for (int j = 0; j < n; j++) {
+			System.out.printf(" %14s", ENGINES[j]);
+		}
+
+		System.out.println();
+
+		for (int i = 0; i < n; i++) {
+			long points = 0;
+			long played = 0;
+
+			System.out.printf("  %-10s", ENGINES[i]);
+
+			for (int j = 0; j < n; j++) {
+				int cell = (i * n + j) * 3;
+				long wins = results.get(cell);
+				long ties = results.get(cell + 1);
+				long losses = results.get(cell + 2);
+
+				System.out.printf(" %14s", (i == j) ? "-" : wins + "/" + ties + "/" + losses);
+				points += 2 * wins + ties;
+				played += wins + ties + losses;
+			}
+
+			System.out.printf("   %5.1f%%%n", (played == 0) ? 0 : 50.0 * points / played);
+		}
+	}
+
+	static void parseArguments(String[] args) {
+		for (String arg : args) {
+			String[] option = arg.split("=", 2);
+
+			if (option.length != 2) {
+				System.err.println("Opo ignorada: " + arg);
+				continue;
+			}
+
+			switch (option[0]) {
+			case "--engines":
+				ENGINES = option[1].split(",");
+				break;
+			case "--size":
+				BOARD_SIZE = Integer.parseInt(option[1]);
+				break;
+			case "--win":
+				WIN_LENGTH = Integer.parseInt(option[1]);
+				break;
+			case "--games":
+				GAMES = Integer.parseInt(option[1]);
+				break;
+			case "--openings":
+				OPENING = Integer.parseInt(option[1]);
+				break;
+			case "--threads":
+				THREADS = Integer.parseInt(option[1]);
+				break;
+			case "--seed":
+				SEED = Long.parseLong(option[1]);
+				break;
+			default:
+				System.err.println("Opo ignorada: " + arg);
+				break;
+			}
+		}
+	}
+}
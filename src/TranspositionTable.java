@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * Tabela de transposio usada pela busca para lembrar o valor de posies j
+ * examinadas. As posies so identificadas pelo hash cannico do JogoDaVelha,
+ * ento todas as rotaes e reflexes de uma posio ocupam a mesma entrada.
+ *
+ * A tabela tem tamanho fixo e  dividida em grupos de duas entradas: a primeira
+ * fica com a busca mais profunda j feita para o grupo, e a segunda  sempre
+ * substituda pela mais recente. Cada entrada  guardada em dois long (a chave e
+ * os dados), ento consultar e gravar no alocam nada.
+ *
+ * A tabela no  segura para uso por vrias threads ao mesmo tempo.
+ */
+public class TranspositionTable {
+	/**
+	 * Tipos de limite de um valor guardado: exato, limite inferior (a busca foi
+	 * podada por beta) ou limite superior (nenhuma jogada superou alfa).
+	 */
+	public static final int EXACT = 1;
+	public static final int LOWER_BOUND = 2;
+	public static final int UPPER_BOUND = 3;
+
+	/**
+	 * Valor retornado por probe () quando a posio no est na tabela.
+	 */
+	public static final long MISS = 0;
+
+	/**
+	 * Chaves e dados das entradas. Os dados guardam o valor nos 32 bits inferiores,
+	 * a profundidade nos 8 bits seguintes e o tipo de limite acima deles. Como o
+	 * tipo de limite nunca  0, dados iguais a 0 indicam uma entrada vazia.
+	 */
+	private final long[] keys;
+	private final long[] data;
+
+	/**
+	 * Mscara usada para escolher o grupo de uma chave.
+	 */
+	private final int bucketMask;
+
+	/**
+	 * Contadores de consultas encontradas, no encontradas e de gravaes.
+	 */
+	private long hits = 0;
+	private long misses = 0;
+	private long stores = 0;
+
+	/**
+	 * Estabelece uma tabela com pelo menos capacity entradas, arredondada para uma
+	 * potncia de dois.
+	 */
+	public TranspositionTable(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+		keys = new long[size];
+		data = new long[size];
+		bucketMask = (size / 2) - 1;
+	}
+
+	/**
+	 * Retorna os dados guardados para a chave, ou MISS se ela no estiver na
+	 * tabela. Use valueOf (), depthOf () e boundOf () para ler os dados.
+	 */
+	public long probe(long key) {
+		int slot = slotOf(key);
+
+		if (data[slot] != MISS && keys[slot] == key) {
+			hits++;
+			return data[slot];
+		}
+
+		if (data[slot + 1] != MISS && keys[slot + 1] == key) {
+			hits++;
+			return data[slot + 1];
+		}
+
+		misses++;
+		return MISS;
+	}
+
+	/**
+	 * Guarda o valor de uma posio buscada com a profundidade e o tipo de limite
+	 * indicados.
+	 */
+	public void store(long key, int value, int depth, int bound) {
+		int slot = slotOf(key);
+		long entry = pack(value, depth, bound);
+
+		stores++;
+
+		// A primeira entrada  substituda se for da mesma posio ou se a nova
+		// busca for pelo menos to profunda quanto a guardada.
+		if (data[slot] == MISS || keys[slot] == key || depth >= depthOf(data[slot])) {
+			// A entrada antiga ainda pode ser til: passe-a para a segunda entrada.
+			if (data[slot] != MISS && keys[slot] != key) {
+				keys[slot + 1] = keys[slot];
+				data[slot + 1] = data[slot];
+			}
+
+			keys[slot] = key;
+			data[slot] = entry;
+		}
+
+		// Caso contrrio, a segunda entrada fica com a mais recente.
+		else {
+			keys[slot + 1] = key;
+			data[slot + 1] = entry;
+		}
+	}
+
+	/**
+	 * Remove todas as entradas e zera os contadores.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(data, MISS);
+		hits = 0;
+		misses = 0;
+		stores = 0;
+	}
+
+	/**
+	 * Retorna o valor guardado nos dados de uma entrada.
+	 */
+	public static int valueOf(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * Retorna a profundidade guardada nos dados de uma entrada.
+	 */
+	public static int depthOf(long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	/**
+	 * Retorna o tipo de limite guardado nos dados de uma entrada.
+	 */
+	public static int boundOf(long entry) {
+		return (int) (entry >>> 40) & 0xFF;
+	}
+
+	/**
+	 * Retorna quantas consultas encontraram a posio.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Retorna quantas consultas no encontraram a posio.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Retorna quantas posies foram gravadas.
+	 */
+	public long getStores() {
+		return stores;
+	}
+
+	/**
+	 * Retorna o nmero de entradas da tabela.
+	 */
+	public int getCapacity() {
+		return keys.length;
+	}
+
+	private int slotOf(long key) {
+		// O hash cannico  o menor entre as simetrias, ento seus bits altos tendem a
+		// zero; os bits baixos continuam uniformes.
+		return ((int) key & bucketMask) << 1;
+	}
+
+	private static long pack(int value, int depth, int bound) {
+		return (value & 0xFFFFFFFFL) | ((long) Math.min(depth, 0xFF) << 32) | ((long) bound << 40);
+	}
+}